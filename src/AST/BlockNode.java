@@ -1,6 +1,7 @@
 package AST;
 
 import Game.Game;
+import Game.GameProps;
 
 import java.util.List;
 
@@ -17,6 +18,8 @@ public class BlockNode extends ExecNode {
     @Override
     public boolean execute(Game game) {
         for (ExecNode node : nodes) {
+            if (game instanceof GameProps props)
+                props.checkExecution();
             if (!node.execute(game))
                 return false;
         }
@@ -1,24 +1,24 @@
 package AST;
 
 import Game.Game;
+import Game.GameProps;
 
 public class WhileNode extends ConditionalNode {
-    private int executionCount = 0;
-
     public WhileNode(ExprNode expression, ExecNode statements) {
         super(expression, statements, null);
-        if (trueNode == null)
-            trueNode = this;
     }
 
     @Override
     public boolean execute(Game game) {
-        if (super.condition.eval(game) > 0 && executionCount < 10000) {
-            executionCount++;
+        // the game counts the iterations so that a parsed plan can be executed again, and by several games at once
+        GameProps props = game instanceof GameProps p ? p : null;
+        while (true) {
+            if (props != null)
+                props.checkExecution();
+            if (super.condition.eval(game) <= 0 || props != null && !props.nextLoopIteration(this))
+                return true;
             if (!trueNode.execute(game))
                 return false;
-            return execute(game);
         }
-        return true;
     }
 }
@@ -0,0 +1,62 @@
+package Analytics;
+
+import Game.ReplayArchive;
+
+import java.util.function.Predicate;
+
+/**
+ * metric aggregating only the replays accepted by a filter, see {@link Metric#filter(Predicate)}
+ */
+final class FilteredMetric<A, R> implements Metric<FilteredMetric.State<A>, R> {
+    static final class State<A> {
+        private A accumulator;
+        private boolean skipped;
+
+        private State(A accumulator) {
+            this.accumulator = accumulator;
+        }
+    }
+
+    private final Metric<A, R> metric;
+    private final Predicate<ReplayArchive.Reader> filter;
+
+    FilteredMetric(Metric<A, R> metric, Predicate<ReplayArchive.Reader> filter) {
+        this.metric = metric;
+        this.filter = filter;
+    }
+
+    @Override
+    public State<A> create() {
+        return new State<>(metric.create());
+    }
+
+    @Override
+    public void start(State<A> state, ReplayArchive.Reader replay) {
+        state.skipped = !filter.test(replay);
+        if (!state.skipped)
+            metric.start(state.accumulator, replay);
+    }
+
+    @Override
+    public void turn(State<A> state, ReplayArchive.Reader replay) {
+        if (!state.skipped)
+            metric.turn(state.accumulator, replay);
+    }
+
+    @Override
+    public void end(State<A> state, ReplayArchive.Reader replay) {
+        if (!state.skipped)
+            metric.end(state.accumulator, replay);
+    }
+
+    @Override
+    public State<A> combine(State<A> first, State<A> second) {
+        first.accumulator = metric.combine(first.accumulator, second.accumulator);
+        return first;
+    }
+
+    @Override
+    public R result(State<A> state) {
+        return metric.result(state.accumulator);
+    }
+}
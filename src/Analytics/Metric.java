@@ -0,0 +1,131 @@
+package Analytics;
+
+import Game.ReplayArchive;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * aggregation over the replays of a corpus. every worker folds the replays it reads into its own accumulator,
+ * one turn at a time, and the accumulators of the workers are then combined, so a metric never holds more
+ * than its accumulators whatever the size of the corpus.
+ *
+ * @param <A> accumulator, only touched by one worker at a time
+ * @param <R> result
+ */
+public interface Metric<A, R> {
+    /**
+     * pair of results of two metrics computed in one pass
+     */
+    record Pair<R, S>(R first, S second) {
+    }
+
+    A create();
+
+    /**
+     * called before the first turn of a replay, the reader holds the start board
+     */
+    default void start(A accumulator, ReplayArchive.Reader replay) {
+    }
+
+    /**
+     * called after every turn of a replay, the reader holds the board and the actions of the turn
+     */
+    default void turn(A accumulator, ReplayArchive.Reader replay) {
+    }
+
+    /**
+     * called after the last turn of a replay
+     */
+    default void end(A accumulator, ReplayArchive.Reader replay) {
+    }
+
+    /**
+     * @return accumulator holding both, the arguments are no longer used afterwards
+     */
+    A combine(A first, A second);
+
+    R result(A accumulator);
+
+    default <S> Metric<A, S> map(Function<? super R, ? extends S> mapper) {
+        Metric<A, R> metric = this;
+        return new Metric<>() {
+            @Override
+            public A create() {
+                return metric.create();
+            }
+
+            @Override
+            public void start(A accumulator, ReplayArchive.Reader replay) {
+                metric.start(accumulator, replay);
+            }
+
+            @Override
+            public void turn(A accumulator, ReplayArchive.Reader replay) {
+                metric.turn(accumulator, replay);
+            }
+
+            @Override
+            public void end(A accumulator, ReplayArchive.Reader replay) {
+                metric.end(accumulator, replay);
+            }
+
+            @Override
+            public A combine(A first, A second) {
+                return metric.combine(first, second);
+            }
+
+            @Override
+            public S result(A accumulator) {
+                return mapper.apply(metric.result(accumulator));
+            }
+        };
+    }
+
+    /**
+     * @param filter decides from the start board whether a replay is aggregated
+     */
+    default Metric<?, R> filter(Predicate<ReplayArchive.Reader> filter) {
+        return new FilteredMetric<>(this, filter);
+    }
+
+    /**
+     * compute two metrics in the same pass over the corpus
+     */
+    static <A, B, R, S> Metric<Pair<A, B>, Pair<R, S>> both(Metric<A, R> first, Metric<B, S> second) {
+        return new Metric<>() {
+            @Override
+            public Pair<A, B> create() {
+                return new Pair<>(first.create(), second.create());
+            }
+
+            @Override
+            public void start(Pair<A, B> accumulator, ReplayArchive.Reader replay) {
+                first.start(accumulator.first(), replay);
+                second.start(accumulator.second(), replay);
+            }
+
+            @Override
+            public void turn(Pair<A, B> accumulator, ReplayArchive.Reader replay) {
+                first.turn(accumulator.first(), replay);
+                second.turn(accumulator.second(), replay);
+            }
+
+            @Override
+            public void end(Pair<A, B> accumulator, ReplayArchive.Reader replay) {
+                first.end(accumulator.first(), replay);
+                second.end(accumulator.second(), replay);
+            }
+
+            @Override
+            public Pair<A, B> combine(Pair<A, B> a, Pair<A, B> b) {
+                return new Pair<>(first.combine(a.first(), b.first()), second.combine(a.second(), b.second()));
+            }
+
+            @Override
+            public Pair<R, S> result(Pair<A, B> accumulator) {
+                return new Pair<>(first.result(accumulator.first()), second.result(accumulator.second()));
+            }
+        };
+    }
+}
@@ -0,0 +1,158 @@
+package Analytics;
+
+import Game.CommandBuffer;
+import Game.ReplayArchive;
+
+import java.util.*;
+
+/**
+ * metrics used for balance analysis
+ */
+public final class Metrics {
+    private Metrics() {
+    }
+
+    /**
+     * @return statistics of the number of turns played by every replay
+     */
+    public static Metric<LongSummaryStatistics, LongSummaryStatistics> turnCount() {
+        return new Metric<>() {
+            @Override
+            public LongSummaryStatistics create() {
+                return new LongSummaryStatistics();
+            }
+
+            @Override
+            public void end(LongSummaryStatistics accumulator, ReplayArchive.Reader replay) {
+                accumulator.accept(replay.getTurn() - replay.getStartTurn());
+            }
+
+            @Override
+            public LongSummaryStatistics combine(LongSummaryStatistics first, LongSummaryStatistics second) {
+                first.combine(second);
+                return first;
+            }
+
+            @Override
+            public LongSummaryStatistics result(LongSummaryStatistics accumulator) {
+                return accumulator;
+            }
+        };
+    }
+
+    /**
+     * @return number of times every command was applied, by name in the plan language
+     */
+    public static Metric<Map<String, long[]>, SortedMap<String, Long>> actionUsage() {
+        return new Metric<>() {
+            @Override
+            public Map<String, long[]> create() {
+                return new HashMap<>();
+            }
+
+            @Override
+            public void turn(Map<String, long[]> accumulator, ReplayArchive.Reader replay) {
+                CommandBuffer actions = replay.actions();
+                for (int i = 0; i < actions.size(); i++)
+                    accumulator.computeIfAbsent(actions.command(i), command -> new long[1])[0]++;
+            }
+
+            @Override
+            public Map<String, long[]> combine(Map<String, long[]> first, Map<String, long[]> second) {
+                second.forEach((command, count) -> first.computeIfAbsent(command, c -> new long[1])[0] += count[0]);
+                return first;
+            }
+
+            @Override
+            public SortedMap<String, Long> result(Map<String, long[]> accumulator) {
+                SortedMap<String, Long> usage = new TreeMap<>();
+                accumulator.forEach((command, count) -> usage.put(command, count[0]));
+                return usage;
+            }
+        };
+    }
+
+    private static final class WinRates {
+        private final SortedMap<Long, long[]> games = new TreeMap<>();
+        private long[] distances = new long[0];
+    }
+
+    /**
+     * @return share of the games won by a player, by distance from its city center to the nearest opponent
+     * city center at the start of the replay. only replays whose archive recorded a winner are counted, a game
+     * still running or an archive older than version 3 has none
+     */
+    public static Metric<?, SortedMap<Long, Double>> winRateByStartingDistance() {
+        return new Metric<WinRates, SortedMap<Long, Double>>() {
+            @Override
+            public WinRates create() {
+                return new WinRates();
+            }
+
+            @Override
+            public void start(WinRates accumulator, ReplayArchive.Reader replay) {
+                int players = replay.players();
+                long[] centers = new long[players];
+                Arrays.fill(centers, -1);
+                for (int cell = 0; cell < replay.cells(); cell++) {
+                    if (replay.getIsCityCenter(cell) && replay.getOwner(cell) >= 0)
+                        centers[replay.getOwner(cell)] = cell;
+                }
+                long cols = replay.getConfiguration().cols();
+                accumulator.distances = new long[players];
+                for (int i = 0; i < players; i++) {
+                    long nearest = -1;
+                    for (int j = 0; j < players; j++) {
+                        if (i == j || centers[i] < 0 || centers[j] < 0)
+                            continue;
+                        long distance = distance(centers[i] % cols, centers[i] / cols, centers[j] % cols, centers[j] / cols);
+                        if (nearest < 0 || distance < nearest)
+                            nearest = distance;
+                    }
+                    accumulator.distances[i] = nearest;
+                }
+            }
+
+            @Override
+            public void end(WinRates accumulator, ReplayArchive.Reader replay) {
+                int winner = replay.winner();
+                if (winner < 0)
+                    return;
+                for (int i = 0; i < accumulator.distances.length; i++) {
+                    if (accumulator.distances[i] < 0)
+                        continue;
+                    long[] games = accumulator.games.computeIfAbsent(accumulator.distances[i], d -> new long[2]);
+                    games[0]++;
+                    if (i == winner)
+                        games[1]++;
+                }
+            }
+
+            @Override
+            public WinRates combine(WinRates first, WinRates second) {
+                second.games.forEach((distance, games) -> {
+                    long[] counts = first.games.computeIfAbsent(distance, d -> new long[2]);
+                    counts[0] += games[0];
+                    counts[1] += games[1];
+                });
+                return first;
+            }
+
+            @Override
+            public SortedMap<Long, Double> result(WinRates accumulator) {
+                SortedMap<Long, Double> rates = new TreeMap<>();
+                accumulator.games.forEach((distance, games) -> rates.put(distance, (double) games[1] / games[0]));
+                return rates;
+            }
+        };
+    }
+
+    /**
+     * @return number of steps between two regions of the hexagonal territory, odd columns are shifted up
+     */
+    static long distance(long x1, long y1, long x2, long y2) {
+        long q = x2 - x1;
+        long r = (y2 - (x2 + (x2 & 1)) / 2) - (y1 - (x1 + (x1 & 1)) / 2);
+        return (Math.abs(q) + Math.abs(r) + Math.abs(q + r)) / 2;
+    }
+}
@@ -0,0 +1,112 @@
+package Analytics;
+
+import Game.GameException;
+import Game.ReplayArchive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * runs metrics over a corpus of replay archives, see {@link ReplayArchive}. archives are streamed turn after
+ * turn from memory-mapped files without rebuilding the games, and workers read different files in parallel,
+ * so only the archives being read are mapped at a time and the corpus may be larger than the memory.
+ */
+public final class ReplayCorpus {
+    private ReplayCorpus() {
+    }
+
+    /**
+     * @param glob pattern of the names of the archives in the directory, see {@link Files#newDirectoryStream(Path, String)}
+     */
+    public static <A, R> R aggregate(Path directory, String glob, Metric<A, R> metric, int parallelism) throws IOException {
+        try (DirectoryStream<Path> replays = Files.newDirectoryStream(directory, glob)) {
+            return aggregate(replays.iterator(), metric, parallelism);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @param replays     paths of the archives, consumed lazily by the workers
+     * @param parallelism number of archives read at the same time
+     * @throws UncheckedIOException      if an archive cannot be read
+     * @throws GameException.InvalidSave if an archive is damaged
+     */
+    public static <A, R> R aggregate(Iterator<Path> replays, Metric<A, R> metric, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive");
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "replay-corpus");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Corpus corpus = new Corpus(replays);
+            List<CompletableFuture<A>> accumulators = new ArrayList<>(parallelism);
+            for (int i = 0; i < parallelism; i++)
+                accumulators.add(CompletableFuture.supplyAsync(() -> fold(corpus, metric), workers));
+            A result = null;
+            RuntimeException failure = null;
+            for (CompletableFuture<A> accumulator : accumulators) {
+                try {
+                    A folded = accumulator.join();
+                    result = result == null ? folded : metric.combine(result, folded);
+                } catch (CompletionException e) {
+                    if (failure == null)
+                        failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+            }
+            if (failure != null)
+                throw failure;
+            return metric.result(result);
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * paths shared by the workers, a failed worker stops the others at their next archive
+     */
+    private static final class Corpus {
+        private final Iterator<Path> replays;
+        private volatile boolean failed;
+
+        private Corpus(Iterator<Path> replays) {
+            this.replays = replays;
+        }
+
+        private synchronized Path next() {
+            return !failed && replays.hasNext() ? replays.next() : null;
+        }
+    }
+
+    private static <A, R> A fold(Corpus corpus, Metric<A, R> metric) {
+        A accumulator = metric.create();
+        try {
+            for (Path path = corpus.next(); path != null; path = corpus.next()) {
+                ReplayArchive.Reader replay = ReplayArchive.Reader.open(path);
+                metric.start(accumulator, replay);
+                while (replay.next())
+                    metric.turn(accumulator, replay);
+                metric.end(accumulator, replay);
+            }
+        } catch (IOException e) {
+            corpus.failed = true;
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            corpus.failed = true;
+            throw e;
+        }
+        return accumulator;
+    }
+}
@@ -0,0 +1,153 @@
+package Analytics;
+
+import Game.Configuration;
+import Game.GameException;
+import Game.GameProps;
+import Game.GameRandom;
+import Game.GameUtils;
+import Game.ReplayArchive;
+import Parser.Plan;
+import Player.Player;
+import Player.PlayerProps;
+import Region.Region;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplayCorpusTest {
+    private static final List<Plan> PLANS = List.of(
+            Plan.compile("if (random % 2) then move up else move downright invest random % 40 + 1 shoot down 30"),
+            Plan.compile("n = random % 30 if (random % 2) then move upleft else move down invest n shoot up random % 50"),
+            Plan.compile("invest 10 move downleft collect 5 if (random % 5) then shoot upright 40 else relocate"));
+
+    @TempDir
+    Path directory;
+
+    /**
+     * write the archives of games with two or three players
+     *
+     * @return number of times every command was applied in the games
+     */
+    private SortedMap<String, Long> writeCorpus(int games) throws IOException {
+        SortedMap<String, Long> usage = new TreeMap<>();
+        for (int i = 0; i < games; i++) {
+            List<String> names = i % 2 == 0 ? List.of("a", "b") : List.of("a", "b", "c");
+            GameProps game = (GameProps) GameUtils.createCustomGame("m=8 n=8 init_budget=500", names, i);
+            ReplayArchive.Writer writer = new ReplayArchive.Writer(game);
+            while (game.getTurn() <= 30 && game.winner() == null) {
+                try {
+                    game.submitPlan(PLANS.get(game.getPlayers().indexOf(game.getCurrentPlayer())));
+                } catch (RuntimeException e) {
+                    game.submitPlan("done");
+                }
+                writer.append(game);
+            }
+            writer.save(directory.resolve("game-" + i + ".upba"));
+        }
+        for (int i = 0; i < games; i++) {
+            ReplayArchive.Reader replay = ReplayArchive.Reader.open(directory.resolve("game-" + i + ".upba"));
+            while (replay.next()) {
+                for (int j = 0; j < replay.actions().size(); j++)
+                    usage.merge(replay.actions().command(j), 1L, Long::sum);
+            }
+        }
+        return usage;
+    }
+
+    @Test
+    public void parallelAggregation() throws IOException {
+        SortedMap<String, Long> usage = writeCorpus(12);
+        Files.writeString(directory.resolve("notes.txt"), "not an archive");
+        Metric<?, Metric.Pair<LongSummaryStatistics, SortedMap<String, Long>>> metric =
+                Metric.both(Metrics.turnCount(), Metrics.actionUsage());
+
+        Metric.Pair<LongSummaryStatistics, SortedMap<String, Long>> parallel =
+                ReplayCorpus.aggregate(directory, "*.upba", metric, 4);
+        Metric.Pair<LongSummaryStatistics, SortedMap<String, Long>> sequential =
+                ReplayCorpus.aggregate(directory, "*.upba", metric, 1);
+        assertEquals(12, parallel.first().getCount());
+        assertEquals(sequential.first().getSum(), parallel.first().getSum());
+        assertEquals(usage, parallel.second());
+        assertEquals(usage, sequential.second());
+        assertTrue(usage.containsKey("invest"));
+
+        long threePlayers = ReplayCorpus.aggregate(directory, "*.upba",
+                Metrics.turnCount().filter(replay -> replay.players() == 3).map(LongSummaryStatistics::getCount), 3);
+        assertEquals(6, threePlayers);
+
+        SortedMap<Long, Double> winRates = ReplayCorpus.aggregate(directory, "*.upba", Metrics.winRateByStartingDistance(), 4);
+        for (double rate : winRates.values())
+            assertTrue(rate >= 0 && rate <= 1);
+    }
+
+    /**
+     * archive a game between three players in column 0 of the board, every player but the winner spends its
+     * whole budget and is eliminated while it still owns its city center
+     *
+     * @param rows row of the city center of every player
+     * @param winner index of the winner, `-1` to stop before the game is won
+     */
+    private void writeGame(String name, int[] rows, int winner) throws IOException {
+        Configuration configuration = GameUtils.loadConfig("m=8 n=8 init_budget=500");
+        List<Region> territory = GameUtils.createTerritory(configuration);
+        List<Player> players = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            Player player = new PlayerProps(1000 + i, "p" + i, configuration.initialBudget());
+            Region center = territory.get((int) (rows[i] * configuration.cols()));
+            center.setCityCenter(player);
+            center.updateDeposit(configuration.initialDeposit());
+            players.add(player);
+        }
+        GameProps game = new GameProps(configuration, territory, players, new GameRandom(1));
+        ReplayArchive.Writer writer = new ReplayArchive.Writer(game);
+        for (int i = 0; i < players.size() && game.winner() == null; i++) {
+            game.submitPlan(winner < 0 || i == winner ? "done" : "invest budget - 1");
+            writer.append(game);
+        }
+        assertEquals(winner < 0 ? null : players.get(winner), game.winner());
+        writer.save(directory.resolve(name + ".upba"));
+    }
+
+    @Test
+    public void winRateOfKnownWinners() throws IOException {
+        // nearest opponent: 2 steps for players 0 and 1, 5 steps for player 2
+        int[] rows = {0, 2, 7};
+        writeGame("far-wins", rows, 2);
+        writeGame("near-wins", rows, 0);
+        writeGame("running", rows, -1);
+        SortedMap<Long, Double> winRates = ReplayCorpus.aggregate(directory, "*.upba", Metrics.winRateByStartingDistance(), 2);
+        assertEquals(new TreeMap<>(Map.of(2L, 0.25, 5L, 0.5)), winRates);
+    }
+
+    @Test
+    public void damagedArchive() throws IOException {
+        writeCorpus(3);
+        Files.write(directory.resolve("game-9.upba"), new byte[]{1, 2, 3});
+        assertThrows(GameException.InvalidSave.class,
+                () -> ReplayCorpus.aggregate(directory, "*.upba", Metrics.turnCount(), 2));
+        List<Path> missing = new ArrayList<>(List.of(directory.resolve("missing.upba")));
+        assertThrows(UncheckedIOException.class,
+                () -> ReplayCorpus.aggregate(missing.iterator(), Metrics.turnCount(), 2));
+    }
+
+    @Test
+    public void distance() {
+        assertEquals(0, Metrics.distance(3, 3, 3, 3));
+        assertEquals(1, Metrics.distance(0, 0, 1, 1)); // down right of an even column
+        assertEquals(1, Metrics.distance(1, 1, 2, 0)); // up right of an odd column
+        assertEquals(3, Metrics.distance(0, 0, 0, 3));
+        assertEquals(4, Metrics.distance(0, 0, 4, 2));
+    }
+}
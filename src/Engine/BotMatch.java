@@ -0,0 +1,188 @@
+package Engine;
+
+import Game.Game;
+import Game.GameSnapshot;
+import Game.SimulationResult;
+import Game.Varints;
+import Parser.Plan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * a match between bots running as local processes, the way contest judges run them. every bot receives the
+ * board once and then the changes of every turn as soon as the turn is played, whoever played it, so the
+ * turns are pipelined to the bots and a bot only waits for its own PLAY. a bot that does not answer in time,
+ * stops or sends a plan that fails passes its turn, see {@link Protocol} for the frames. a bot that stops
+ * reading falls behind: once too much is queued to it, it no longer receives the turns and passes its own,
+ * and it receives the STATE again when it read most of what was queued.
+ */
+public class BotMatch implements AutoCloseable {
+    private static final Plan PASS = Plan.compile("done");
+    /**
+     * queued bytes over which a bot no longer receives the turns
+     */
+    private static final long HIGH_WATER = 1 << 20;
+    /**
+     * queued bytes under which a bot that fell behind receives the state again
+     */
+    private static final long LOW_WATER = 1 << 18;
+
+    private final Game game;
+    private final BotProcess[] bots;
+    private final long timeLimitNanos;
+    private final long[] timeouts;
+    private final boolean[] lagging;
+    private final long highWater;
+    private final long lowWater;
+    private final Duration previousTimeout;
+    private int nextRequest = 1;
+
+    /**
+     * start the bots, the bot of every player is given in turn order
+     *
+     * @param game      game played by the bots, only touched by the thread playing the match
+     * @param timeLimit time a bot has to answer a PLAY, and time its plan may then run, until the match is closed
+     */
+    public BotMatch(Game game, List<ProcessBuilder> bots, Duration timeLimit) throws IOException {
+        this(game, bots, timeLimit, HIGH_WATER, LOW_WATER);
+    }
+
+    /**
+     * @param highWater queued bytes over which a bot no longer receives the turns
+     * @param lowWater  queued bytes under which a bot that fell behind receives the state again
+     */
+    BotMatch(Game game, List<ProcessBuilder> bots, Duration timeLimit, long highWater, long lowWater)
+            throws IOException {
+        if (bots.size() != game.getPlayers().size())
+            throw new IllegalArgumentException("expected " + game.getPlayers().size() + " bots");
+        this.game = game;
+        this.bots = new BotProcess[bots.size()];
+        this.timeLimitNanos = timeLimit.toNanos();
+        this.timeouts = new long[bots.size()];
+        this.lagging = new boolean[bots.size()];
+        this.highWater = highWater;
+        this.lowWater = lowWater;
+        this.previousTimeout = game.getExecutionTimeout();
+        try {
+            for (int i = 0; i < bots.size(); i++)
+                this.bots[i] = new BotProcess(bots.get(i), "bot-" + i);
+        } catch (IOException e) {
+            stop(this.bots);
+            throw e;
+        }
+        // a plan answered in time must not hold the match by running forever
+        game.setExecutionTimeout(timeLimit);
+        ByteBuffer state = state();
+        for (BotProcess bot : this.bots)
+            bot.send(state.duplicate());
+    }
+
+    private ByteBuffer state() {
+        GameSnapshot snapshot = game.snapshot();
+        ByteBuffer state = ByteBuffer.allocate(Protocol.maxStateSize(snapshot));
+        Protocol.state(state, 0, snapshot);
+        return state.flip();
+    }
+
+    /**
+     * send the changes of a turn to every bot that keeps up
+     */
+    private void broadcast(ByteBuffer turn) {
+        for (int i = 0; i < bots.length; i++) {
+            if (lagging[i]) {
+                // the state sent on catching up already holds the turn
+                catchUp(i);
+            } else if (bots[i].queued() > highWater) {
+                lagging[i] = true;
+            } else {
+                bots[i].send(turn.duplicate());
+            }
+        }
+    }
+
+    /**
+     * send the current state to a bot that fell behind once it read most of what was queued
+     *
+     * @return false if the bot is still behind
+     */
+    private boolean catchUp(int player) {
+        if (bots[player].queued() >= lowWater)
+            return false;
+        bots[player].send(state());
+        lagging[player] = false;
+        return true;
+    }
+
+    /**
+     * play until the game ends or the number of turns is reached
+     *
+     * @return outcome of the match, a plan that failed, was not answered in time or ran out of time counts
+     * as failed
+     */
+    public SimulationResult play(long maxTurns) throws InterruptedException {
+        long firstTurn = game.getTurn();
+        long plans = 0;
+        long failed = 0;
+        ByteBuffer play = ByteBuffer.allocate(Protocol.HEADER_SIZE + 2 * Varints.MAX_SIZE);
+        while (game.winner() == null && game.getTurn() - firstTurn < maxTurns) {
+            GameSnapshot before = game.snapshot();
+            int player = before.playerIndex(game.getCurrentPlayer());
+            String plan = null;
+            // a bot still behind would play a board it has not read, it passes without being asked
+            if (!lagging[player] || catchUp(player)) {
+                int requestId = nextRequest++;
+                play.clear();
+                int start = Protocol.begin(play, Protocol.PLAY, requestId);
+                Varints.putLong(play, player);
+                Varints.putLong(play, game.getTurn());
+                Protocol.end(play, start);
+                bots[player].send(play.flip());
+                plan = bots[player].await(requestId, System.nanoTime() + timeLimitNanos);
+            }
+            plans++;
+            if (plan == null) {
+                timeouts[player]++;
+                failed++;
+                game.submitPlan(PASS);
+            } else {
+                try {
+                    game.submitPlan(plan);
+                } catch (RuntimeException e) {
+                    failed++;
+                    game.submitPlan(PASS);
+                }
+            }
+            ByteBuffer turn = ByteBuffer.allocate(Protocol.maxTurnSize(game.lastDelta()));
+            Protocol.turn(turn, 0, game.lastDelta(), before);
+            broadcast(turn.flip());
+        }
+        return new SimulationResult(game.winner(), game.getTurn() - firstTurn, plans, failed);
+    }
+
+    /**
+     * @param player index of the player in turn order
+     * @return number of turns the bot of the player did not answer in time, or passed because it fell behind
+     */
+    public long timeouts(int player) {
+        return timeouts[player];
+    }
+
+    /**
+     * stop the bots and give the game back its execution timeout
+     */
+    @Override
+    public void close() {
+        stop(bots);
+        game.setExecutionTimeout(previousTimeout);
+    }
+
+    private static void stop(BotProcess[] bots) {
+        for (BotProcess bot : bots) {
+            if (bot != null)
+                bot.close();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package Engine;
+
+import Game.Game;
+import Game.GameUtils;
+import Game.SimulationResult;
+import Game.Varints;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BotMatchTest {
+    /**
+     * bot invested in its city center every turn, started as a separate process
+     */
+    public static final class Bot {
+        public static void main(String[] args) throws IOException, InterruptedException {
+            String mode = args[0];
+            // never reads what the match sends
+            if (mode.equals("deaf")) {
+                Thread.sleep(60_000);
+                return;
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+            boolean state = false;
+            int plays = 0;
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                ByteBuffer body = ByteBuffer.wrap(frame);
+                byte type = body.get();
+                int requestId = body.getInt();
+                if (type == Protocol.STATE)
+                    state = true;
+                if (type != Protocol.PLAY)
+                    continue;
+                // the board always comes before the first turn to play
+                if (!state)
+                    System.exit(2);
+                Varints.getLong(body);
+                Varints.getLong(body);
+                plays++;
+                if (mode.equals("crash"))
+                    System.exit(1);
+                if (mode.equals("slow") && plays == 2)
+                    Thread.sleep(2500);
+                // answered at once, but runs for far longer than the time limit
+                String source = mode.equals("loop") ? "while (1) x = opponent ".repeat(2500) : "invest 1";
+                ByteBuffer plan = ByteBuffer.allocate(Protocol.HEADER_SIZE + Protocol.maxStringSize(source));
+                int start = Protocol.begin(plan, Protocol.PLAN, requestId);
+                Protocol.putString(plan, source);
+                Protocol.end(plan, start);
+                out.write(plan.array(), 0, plan.position());
+                out.flush();
+            }
+        }
+    }
+
+    private static ProcessBuilder bot(String mode) throws URISyntaxException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = Path.of(BotMatchTest.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        return new ProcessBuilder(java, "-cp", classpath, Bot.class.getName(), mode);
+    }
+
+    @Test
+    public void playMatch() throws Exception {
+        try (BotMatch match = new BotMatch(GameUtils.createGame(List.of("a", "b")),
+                List.of(bot("play"), bot("play")), Duration.ofSeconds(5))) {
+            SimulationResult result = match.play(20);
+            assertEquals(20, result.turns());
+            assertEquals(40, result.plans());
+            assertEquals(0, result.failedPlans());
+        }
+    }
+
+    @Test
+    public void slowBotPasses() throws Exception {
+        try (BotMatch match = new BotMatch(GameUtils.createGame(List.of("a", "b")),
+                List.of(bot("play"), bot("slow")), Duration.ofSeconds(2))) {
+            SimulationResult result = match.play(5);
+            assertEquals(5, result.turns());
+            // the late plan answers a request already passed and is dropped
+            assertEquals(1, result.failedPlans());
+            assertEquals(0, match.timeouts(0));
+            assertEquals(1, match.timeouts(1));
+        }
+    }
+
+    @Test
+    public void loopingPlanPasses() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            try (BotMatch match = new BotMatch(GameUtils.createCustomGame("m=100 n=100", List.of("a", "b"), 3),
+                    List.of(bot("play"), bot("loop")), Duration.ofSeconds(3))) {
+                SimulationResult result = match.play(1);
+                assertEquals(1, result.turns());
+                assertEquals(1, result.failedPlans());
+                assertEquals(0, match.timeouts(1));
+            }
+        });
+    }
+
+    @Test
+    public void crashedBotPasses() {
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            try (BotMatch match = new BotMatch(GameUtils.createGame(List.of("a", "b")),
+                    List.of(bot("crash"), bot("play")), Duration.ofSeconds(5))) {
+                SimulationResult result = match.play(30);
+                assertEquals(30, result.turns());
+                assertEquals(30, match.timeouts(0));
+                assertEquals(0, match.timeouts(1));
+            }
+        });
+    }
+
+    @Test
+    public void laggingBotPasses() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            // the state of the board alone fills the pipe to the deaf bot and leaves it far over the high water
+            Game game = GameUtils.createCustomGame("m=300 n=300", List.of("a", "b"), 4);
+            game.setExecutionTimeout(Duration.ofMillis(250));
+            try (BotMatch match = new BotMatch(game, List.of(bot("play"), bot("deaf")), Duration.ofSeconds(10),
+                    1 << 16, 1 << 12)) {
+                SimulationResult result = match.play(10);
+                assertEquals(10, result.turns());
+                // the deaf bot is never asked, so the match does not wait for it
+                assertEquals(10, match.timeouts(1));
+                assertEquals(0, match.timeouts(0));
+                assertEquals(10, result.failedPlans());
+                assertEquals(Duration.ofSeconds(10), game.getExecutionTimeout());
+            }
+            assertEquals(Duration.ofMillis(250), game.getExecutionTimeout());
+        });
+    }
+
+    @Test
+    public void botPerPlayer() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new BotMatch(GameUtils.createGame(List.of("a", "b")), List.of(bot("play")), Duration.ofSeconds(1)));
+    }
+}
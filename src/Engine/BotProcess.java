@@ -0,0 +1,144 @@
+package Engine;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a bot running as a separate process and speaking the {@link Protocol} over its standard input and output.
+ * frames are written by a writer thread, so a bot that stops reading never blocks the match, and the plans
+ * of the bot are read by a reader thread as soon as they are written.
+ */
+final class BotProcess implements AutoCloseable {
+    private static final byte[] CLOSE = new byte[0];
+
+    private record Plan(int requestId, String plan) {
+    }
+
+    /**
+     * marks the end of the output of the bot
+     */
+    private static final Plan END = new Plan(-1, null);
+
+    private final Process process;
+    private final BlockingQueue<byte[]> outbound;
+    private final BlockingQueue<Plan> plans;
+    private final AtomicLong queued = new AtomicLong();
+
+    /**
+     * @param name name of the threads of the bot
+     */
+    BotProcess(ProcessBuilder builder, String name) throws IOException {
+        if (builder.redirectError() == ProcessBuilder.Redirect.PIPE)
+            builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        this.process = builder.start();
+        this.outbound = new LinkedBlockingQueue<>();
+        this.plans = new LinkedBlockingQueue<>();
+        Thread writer = new Thread(this::write, name + "-writer");
+        Thread reader = new Thread(this::read, name + "-reader");
+        writer.setDaemon(true);
+        reader.setDaemon(true);
+        writer.start();
+        reader.start();
+    }
+
+    /**
+     * queue a frame to the bot, the frames queued together are written at once
+     *
+     * @param frame buffer ready to be read holding whole frames
+     */
+    void send(ByteBuffer frame) {
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        queued.addAndGet(bytes.length);
+        outbound.add(bytes);
+    }
+
+    /**
+     * @return bytes sent to the bot and not yet written to its input
+     */
+    long queued() {
+        return queued.get();
+    }
+
+    private void write() {
+        List<byte[]> frames = new ArrayList<>();
+        try (OutputStream out = new BufferedOutputStream(process.getOutputStream(), 1 << 16)) {
+            while (true) {
+                frames.add(outbound.take());
+                outbound.drainTo(frames);
+                long written = 0;
+                for (byte[] frame : frames) {
+                    if (frame == CLOSE)
+                        return;
+                    out.write(frame);
+                    written += frame.length;
+                }
+                out.flush();
+                queued.addAndGet(-written);
+                frames.clear();
+            }
+        } catch (IOException | InterruptedException ignored) {
+            // the bot exited, its turns time out
+        }
+    }
+
+    private void read() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(process.getInputStream(), 1 << 16))) {
+            while (true) {
+                int length = in.readInt();
+                if (length < Protocol.HEADER_SIZE - 4 || length > Protocol.MAX_REQUEST)
+                    return;
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                ByteBuffer body = ByteBuffer.wrap(frame);
+                byte type = body.get();
+                int requestId = body.getInt();
+                if (type == Protocol.PLAN)
+                    plans.add(new Plan(requestId, Protocol.getString(body)));
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // a bot that closes its output or breaks the protocol no longer plays
+        } finally {
+            plans.add(END);
+        }
+    }
+
+    /**
+     * wait for the plan answering a request, plans answering earlier requests are dropped
+     *
+     * @param deadline {@link System#nanoTime()} after which the bot forfeits the request
+     * @return `null` if the bot did not answer in time or no longer plays
+     */
+    String await(int requestId, long deadline) throws InterruptedException {
+        while (true) {
+            Plan plan = plans.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (plan == null)
+                return null;
+            if (plan == END) {
+                plans.add(END);
+                return null;
+            }
+            if (plan.requestId() == requestId)
+                return plan.plan();
+        }
+    }
+
+    @Override
+    public void close() {
+        outbound.add(CLOSE);
+        process.destroy();
+        try {
+            if (!process.waitFor(1, TimeUnit.SECONDS))
+                process.destroyForcibly();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
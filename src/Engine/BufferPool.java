@@ -0,0 +1,70 @@
+package Engine;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * pool of direct buffers of one size, direct buffers are costly to allocate and are written to sockets
+ * without being copied. buffers can be acquired and released from any thread.
+ */
+final class BufferPool {
+    private final int capacity;
+    private final int maxPooled;
+    private final Queue<ByteBuffer> buffers;
+    private final AtomicInteger pooled;
+
+    /**
+     * @param capacity  capacity of every buffer
+     * @param maxPooled maximum number of idle buffers kept
+     */
+    BufferPool(int capacity, int maxPooled) {
+        this.capacity = capacity;
+        this.maxPooled = maxPooled;
+        this.buffers = new ConcurrentLinkedQueue<>();
+        this.pooled = new AtomicInteger();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return a cleared buffer
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null)
+            return ByteBuffer.allocateDirect(capacity);
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * @return a cleared buffer of at least the size, pooled if the size fits
+     */
+    ByteBuffer acquire(int size) {
+        return size <= capacity ? acquire() : ByteBuffer.allocateDirect(size);
+    }
+
+    /**
+     * give a buffer back, buffers of another size or over the limit are left to the garbage collector
+     */
+    void release(ByteBuffer buffer) {
+        if (buffer.capacity() != capacity || !buffer.isDirect())
+            return;
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        buffers.add(buffer.clear());
+    }
+
+    /**
+     * @return number of idle buffers
+     */
+    int idle() {
+        return pooled.get();
+    }
+}
@@ -0,0 +1,331 @@
+package Engine;
+
+import Game.GameException;
+import Game.GameFile;
+import Game.GameProps;
+import Game.Replay;
+import Game.TurnLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * write-behind persistence of hosted games. every turn is appended to the turn log of the game, and every
+ * few turns a consistent copy of the game is taken on its actor, then encoded and written in the background
+ * with an {@link AsynchronousFileChannel}. taking the copy shares the immutable snapshot of the board, so the
+ * actor never pays for the size of the board. a checkpoint is written to a temporary file, forced to the disk and then
+ * atomically renamed over the previous one, which is kept as a fallback.
+ * a checkpoint file is a CRC32 of the save followed by the save, see {@link GameFile}.
+ */
+public class Checkpointer implements AutoCloseable {
+    private static final Pattern CHECKPOINT = Pattern.compile("game-(\\d+)\\.ckpt(\\.prev)?");
+
+    /**
+     * files of a game, the log is only touched by the actor of the game
+     */
+    private static final class GameFiles {
+        private final long gameId;
+        private TurnLog log;
+        private long checkpointTurn;
+        private GameFile.Capture pending;
+        private boolean writing;
+        private CompletableFuture<Void> idle = CompletableFuture.completedFuture(null);
+
+        private GameFiles(long gameId) {
+            this.gameId = gameId;
+        }
+    }
+
+    private final Path directory;
+    private final int everyTurns;
+    private final int syncEvery;
+    private final ExecutorService io;
+    private final Map<Long, GameFiles> games;
+    private final Set<Long> skipped;
+    private volatile boolean closed;
+
+    /**
+     * @param directory  directory holding the checkpoints and turn logs
+     * @param everyTurns number of turns between two checkpoints of a game
+     * @param syncEvery  number of turns appended to a turn log between two flushes, see {@link TurnLog#open(Path, int)}
+     */
+    public Checkpointer(Path directory, int everyTurns, int syncEvery) throws IOException {
+        if (everyTurns < 1)
+            throw new IllegalArgumentException("everyTurns must be positive");
+        this.directory = Files.createDirectories(directory);
+        this.everyTurns = everyTurns;
+        this.syncEvery = syncEvery;
+        this.io = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.games = new ConcurrentHashMap<>();
+        this.skipped = ConcurrentHashMap.newKeySet();
+    }
+
+    private Path checkpoint(long gameId) {
+        return directory.resolve("game-" + gameId + ".ckpt");
+    }
+
+    private Path previousCheckpoint(long gameId) {
+        return directory.resolve("game-" + gameId + ".ckpt.prev");
+    }
+
+    private Path temporaryCheckpoint(long gameId) {
+        return directory.resolve("game-" + gameId + ".ckpt.tmp");
+    }
+
+    private Path log(long gameId) {
+        return directory.resolve("game-" + gameId + ".log");
+    }
+
+    /**
+     * start persisting a game, must run on the actor of the game
+     */
+    void attach(long gameId, GameProps game) {
+        if (closed)
+            throw new EngineException.EngineClosed();
+        GameFiles files = new GameFiles(gameId);
+        try {
+            files.log = TurnLog.open(log(gameId), syncEvery);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        game.setTurnLog(files.log);
+        games.put(gameId, files);
+        checkpoint(files, game);
+    }
+
+    /**
+     * checkpoint the game if enough turns were played since the last checkpoint, must run on the actor of the game
+     */
+    void turnEnded(long gameId, GameProps game) {
+        GameFiles files = games.get(gameId);
+        if (files != null && (game.getTurn() - files.checkpointTurn >= everyTurns || game.winner() != null))
+            checkpoint(files, game);
+    }
+
+    /**
+     * stop persisting a game, must run on the actor of the game
+     */
+    void detach(long gameId, GameProps game) {
+        GameFiles files = games.remove(gameId);
+        if (files == null)
+            return;
+        game.setTurnLog(null);
+        try {
+            files.log.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkpoint(GameFiles files, GameProps game) {
+        GameFile.Capture capture = GameFile.capture(game);
+        files.checkpointTurn = game.getTurn();
+        synchronized (files) {
+            if (files.writing) {
+                // only the latest copy matters, an older one waiting to be written is dropped
+                files.pending = capture;
+                return;
+            }
+            files.writing = true;
+            if (files.idle.isDone())
+                files.idle = new CompletableFuture<>();
+        }
+        io.execute(() -> write(files, capture));
+    }
+
+    private void write(GameFiles files, GameFile.Capture capture) {
+        Path temporary = temporaryCheckpoint(files.gameId);
+        AsynchronousFileChannel channel;
+        ByteBuffer buffer;
+        try {
+            ByteBuffer save = GameFile.encode(capture);
+            CRC32 crc = new CRC32();
+            crc.update(save.duplicate());
+            buffer = ByteBuffer.allocate(4 + save.remaining()).putInt((int) crc.getValue()).put(save).flip();
+            channel = AsynchronousFileChannel.open(temporary, Set.of(StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), io);
+        } catch (IOException | RuntimeException e) {
+            written(files, e);
+            return;
+        }
+        channel.write(buffer, 0, buffer, new CompletionHandler<>() {
+            @Override
+            public void completed(Integer count, ByteBuffer buffer) {
+                if (buffer.hasRemaining()) {
+                    channel.write(buffer, buffer.position(), buffer, this);
+                    return;
+                }
+                try {
+                    channel.force(true);
+                    channel.close();
+                    rotate(files.gameId, temporary);
+                    written(files, null);
+                } catch (IOException e) {
+                    written(files, e);
+                }
+            }
+
+            @Override
+            public void failed(Throwable e, ByteBuffer buffer) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+                written(files, e);
+            }
+        });
+    }
+
+    private void rotate(long gameId, Path temporary) throws IOException {
+        Path checkpoint = checkpoint(gameId);
+        if (Files.exists(checkpoint))
+            Files.move(checkpoint, previousCheckpoint(gameId), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temporary, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void written(GameFiles files, Throwable failure) {
+        GameFile.Capture next;
+        CompletableFuture<Void> idle;
+        synchronized (files) {
+            next = files.pending;
+            files.pending = null;
+            files.writing = next != null;
+            idle = files.idle;
+        }
+        if (next != null) {
+            io.execute(() -> write(files, next));
+            return;
+        }
+        if (failure != null)
+            idle.completeExceptionally(failure);
+        else
+            idle.complete(null);
+    }
+
+    /**
+     * @return completed once every checkpoint taken so far is on the disk
+     */
+    public CompletableFuture<Void> flush() {
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (GameFiles files : games.values()) {
+            synchronized (files) {
+                writes.add(files.idle);
+            }
+        }
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * rebuild every game of the directory from its latest valid checkpoint and the turns logged after it.
+     * a game without a valid checkpoint or whose turns fail to replay is skipped, its files are left as is
+     *
+     * @return recovered games by id
+     */
+    public Map<Long, GameProps> recover() throws IOException {
+        Set<Long> ids = new TreeSet<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+            for (Path path : paths) {
+                Matcher matcher = CHECKPOINT.matcher(path.getFileName().toString());
+                if (matcher.matches())
+                    ids.add(Long.parseLong(matcher.group(1)));
+            }
+        }
+        Map<Long, GameProps> recovered = new LinkedHashMap<>();
+        skipped.clear();
+        for (long id : ids) {
+            GameProps game;
+            try {
+                game = recover(id);
+            } catch (IOException | RuntimeException e) {
+                game = null;
+            }
+            if (game != null)
+                recovered.put(id, game);
+            else
+                skipped.add(id);
+        }
+        return recovered;
+    }
+
+    /**
+     * @return ids of the games the last {@link #recover()} found but could not rebuild
+     */
+    public Set<Long> skipped() {
+        return Collections.unmodifiableSet(skipped);
+    }
+
+    private GameProps recover(long gameId) throws IOException {
+        List<TurnLog.Entry> entries = Files.exists(log(gameId)) ? TurnLog.read(log(gameId)) : List.of();
+        for (Path path : List.of(checkpoint(gameId), previousCheckpoint(gameId))) {
+            ByteBuffer save = readCheckpoint(path);
+            if (save == null)
+                continue;
+            GameProps game = GameFile.decode(save.duplicate());
+            List<TurnLog.Entry> tail = new ArrayList<>();
+            for (TurnLog.Entry entry : entries) {
+                if (entry.turn() > game.getTurn() || entry.turn() == game.getTurn()
+                        && entry.player() >= game.getPlayers().indexOf(game.getCurrentPlayer()))
+                    tail.add(entry);
+            }
+            if (tail.isEmpty())
+                return game;
+            return new Replay(save, tail, Integer.MAX_VALUE).seek(Long.MAX_VALUE, Replay.Mode.Execute);
+        }
+        return null;
+    }
+
+    /**
+     * @return the save held by a checkpoint file, `null` if the file is missing or damaged
+     */
+    private static ByteBuffer readCheckpoint(Path path) throws IOException {
+        if (!Files.exists(path))
+            return null;
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < 4)
+            return null;
+        int checksum = buffer.getInt();
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != checksum)
+            return null;
+        try {
+            GameFile.decode(buffer.duplicate());
+        } catch (GameException.InvalidSave e) {
+            return null;
+        }
+        return buffer.slice();
+    }
+
+    /**
+     * wait for the checkpoints in progress and close the turn logs, games must no longer be played
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            flush().get(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("checkpoints were not written", e);
+        } finally {
+            for (GameFiles files : games.values())
+                files.log.close();
+            games.clear();
+            io.shutdown();
+        }
+    }
+}
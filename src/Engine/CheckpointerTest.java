@@ -0,0 +1,161 @@
+package Engine;
+
+import Game.CommandBuffer;
+import Game.GameProps;
+import Game.GameUtils;
+import Game.TurnLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CheckpointerTest {
+    @TempDir
+    Path directory;
+
+    private static long stateHash(GameRegistry registry, long id) throws Exception {
+        return registry.ask(id, game -> ((GameProps) game).stateHash()).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void recoverAfterRestart() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        List<Long> hashes = new ArrayList<>();
+        List<Map<String, Long>> identifiers = new ArrayList<>();
+        try (Checkpointer checkpointer = new Checkpointer(directory, 4, 1);
+             GameRegistry registry = new GameRegistry()) {
+            registry.enableCheckpoints(checkpointer);
+            for (int i = 0; i < 3; i++)
+                ids.add(registry.createGame(List.of("a" + i, "b" + i)));
+            List<CompletableFuture<?>> turns = new ArrayList<>();
+            // 9 turns, the last ones after the latest checkpoint are only in the turn logs
+            for (int turn = 0; turn < 9; turn++) {
+                for (long id : ids) {
+                    turns.add(registry.submitPlan(id, "t = random invest 1 move up"));
+                    turns.add(registry.submitPlan(id, "collect 1 move down"));
+                }
+            }
+            CompletableFuture.allOf(turns.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+            checkpointer.flush().get(30, TimeUnit.SECONDS);
+            for (long id : ids) {
+                hashes.add(stateHash(registry, id));
+                identifiers.add(registry.ask(id, game -> Map.copyOf(game.getCurrentPlayer().identifiers())).get());
+            }
+        }
+
+        try (Checkpointer checkpointer = new Checkpointer(directory, 4, 1);
+             GameRegistry registry = new GameRegistry()) {
+            assertEquals(3, registry.recover(checkpointer));
+            for (int i = 0; i < ids.size(); i++) {
+                long id = ids.get(i);
+                assertEquals(hashes.get(i), stateHash(registry, id));
+                assertEquals(10, registry.snapshot(id).getTurn());
+                assertEquals(identifiers.get(i), registry.ask(id, game -> game.getCurrentPlayer().identifiers()).get());
+            }
+            long id = registry.createGame(List.of("c", "d"));
+            assertFalse(ids.contains(id));
+            registry.submitPlan(ids.get(0), "done").get(10, TimeUnit.SECONDS);
+        }
+
+        // the turn played after recovery is logged too
+        try (Checkpointer checkpointer = new Checkpointer(directory, 4, 1)) {
+            Map<Long, GameProps> games = checkpointer.recover();
+            assertEquals(4, games.size());
+            assertEquals(1, games.get(ids.get(0)).getPlayers().indexOf(games.get(ids.get(0)).getCurrentPlayer()));
+        }
+    }
+
+    @Test
+    public void skipGameFailingToReplay() throws Exception {
+        long broken;
+        long healthy;
+        try (Checkpointer checkpointer = new Checkpointer(directory, 4, 0);
+             GameRegistry registry = new GameRegistry()) {
+            registry.enableCheckpoints(checkpointer);
+            broken = registry.createGame(List.of("a", "b"));
+            healthy = registry.createGame(List.of("c", "d"));
+            registry.submitPlan(healthy, "invest 1").get(10, TimeUnit.SECONDS);
+            checkpointer.flush().get(10, TimeUnit.SECONDS);
+        }
+        try (TurnLog log = TurnLog.open(directory.resolve("game-" + broken + ".log"), 0)) {
+            log.append(1, 0, "invest (", 0, new CommandBuffer());
+        }
+
+        try (Checkpointer checkpointer = new Checkpointer(directory, 4, 0);
+             GameRegistry registry = new GameRegistry()) {
+            assertEquals(1, registry.recover(checkpointer));
+            assertEquals(Set.of(broken), checkpointer.skipped());
+            assertEquals("d", registry.snapshot(healthy).getCurrentPlayer().getName());
+            assertTrue(registry.createGame(List.of("e", "f")) > Math.max(broken, healthy));
+        }
+    }
+
+    @Test
+    public void expiredPlanCheckpointed() throws Exception {
+        AtomicLong now = new AtomicLong();
+        TimingWheel wheel = new TimingWheel(64, 1, TimeUnit.SECONDS, now::get);
+        long id;
+        try (Checkpointer checkpointer = new Checkpointer(directory, 1, 0);
+             GameRegistry registry = new GameRegistry()) {
+            registry.enableCheckpoints(checkpointer);
+            registry.enableDeadlines(new PlanDeadlines(wheel, PlanDeadlines.DefaultAction.REUSE_LAST_PLAN));
+            id = registry.host(GameUtils.createCustomGame("init_plan_min=0 init_plan_sec=10", "a", "b"));
+            registry.submitPlan(id, "invest 1").get(10, TimeUnit.SECONDS);
+            now.set(TimeUnit.SECONDS.toNanos(10)); // player b initial deadline expired
+            wheel.advance();
+            registry.ask(id, g -> null).get(10, TimeUnit.SECONDS);
+            assertEquals(2, registry.snapshot(id).getTurn());
+            checkpointer.flush().get(10, TimeUnit.SECONDS);
+        }
+        // the turn ended by the deadline is in the checkpoint, not only in the turn log
+        Files.delete(directory.resolve("game-" + id + ".log"));
+        try (Checkpointer checkpointer = new Checkpointer(directory, 1, 0)) {
+            assertEquals(2, checkpointer.recover().get(id).getTurn());
+        }
+    }
+
+    @Test
+    public void previousCheckpoint() throws Exception {
+        long id;
+        long hash;
+        try (Checkpointer checkpointer = new Checkpointer(directory, 1, 0);
+             GameRegistry registry = new GameRegistry()) {
+            registry.enableCheckpoints(checkpointer);
+            id = registry.createGame(List.of("a", "b"));
+            for (int turn = 0; turn < 3; turn++) {
+                registry.submitPlan(id, "invest 1");
+                registry.submitPlan(id, "done").get(10, TimeUnit.SECONDS);
+                checkpointer.flush().get(10, TimeUnit.SECONDS);
+            }
+            hash = stateHash(registry, id);
+        }
+        Path checkpoint = directory.resolve("game-" + id + ".ckpt");
+        assertTrue(Files.exists(directory.resolve("game-" + id + ".ckpt.prev")));
+        byte[] bytes = Files.readAllBytes(checkpoint);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(checkpoint, bytes);
+
+        try (Checkpointer checkpointer = new Checkpointer(directory, 1, 0)) {
+            GameProps game = checkpointer.recover().get(id);
+            assertNotNull(game);
+            assertEquals(hash, game.stateHash());
+            assertEquals(4, game.getTurn());
+        }
+
+        Files.write(directory.resolve("game-" + id + ".ckpt.prev"), ByteBuffer.allocate(3).array());
+        try (Checkpointer checkpointer = new Checkpointer(directory, 1, 0)) {
+            assertTrue(checkpointer.recover().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package Engine;
+
+public abstract class EngineException extends RuntimeException {
+    protected EngineException(String m) {
+        super(m);
+    }
+
+    public static class GameNotFound extends EngineException {
+        public GameNotFound(long gameId) {
+            super(String.format("game %d not found", gameId));
+        }
+    }
+
+    public static class EngineClosed extends EngineException {
+        public EngineClosed() {
+            super("engine already closed");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package Engine;
+
+import Game.Game;
+import Game.GameSnapshot;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * owns a game and runs every message sent to it one at a time, in the order they were sent.
+ * the actor holds no thread, it is scheduled on the executor only while its mailbox is not empty.
+ * once the executor rejects the actor, every message sent to it fails with the rejection.
+ */
+public class GameActor {
+    private static final int BATCH_SIZE = 64;
+
+    private final long id;
+    private final Game game;
+    private final Executor executor;
+    private final Queue<Message<?>> mailbox;
+    /**
+     * size of the mailbox, counted apart since the size of the queue is not constant time
+     */
+    private final AtomicInteger pending;
+    private final AtomicBoolean scheduled;
+
+    /**
+     * an action of the mailbox with the future it completes
+     */
+    private final class Message<T> {
+        private final Function<Game, T> action;
+        private final CompletableFuture<T> result;
+
+        private Message(Function<Game, T> action, CompletableFuture<T> result) {
+            this.action = action;
+            this.result = result;
+        }
+
+        private void run() {
+            try {
+                result.complete(action.apply(game));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    public GameActor(long id, Game game, Executor executor) {
+        this.id = id;
+        this.game = game;
+        this.executor = executor;
+        this.mailbox = new ConcurrentLinkedQueue<>();
+        this.pending = new AtomicInteger();
+        this.scheduled = new AtomicBoolean();
+    }
+
+    public long getID() {
+        return id;
+    }
+
+    /**
+     * run an action on the game after every action sent before it
+     *
+     * @param action action to run, it must not keep a reference to the game
+     * @return result of the action, completed exceptionally if the executor rejects the actor
+     */
+    public <T> CompletableFuture<T> ask(Function<Game, T> action) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        pending.incrementAndGet();
+        mailbox.add(new Message<>(action, result));
+        schedule();
+        return result;
+    }
+
+    /**
+     * @return latest state published by the game, safe to call from any thread
+     */
+    public GameSnapshot snapshot() {
+        return game.snapshot();
+    }
+
+    /**
+     * @return number of messages waiting in the mailbox
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    private Message<?> poll() {
+        Message<?> message = mailbox.poll();
+        if (message != null)
+            pending.decrementAndGet();
+        return message;
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true))
+            return;
+        try {
+            executor.execute(this::drain);
+        } catch (RuntimeException e) {
+            // the executor is closed, nothing would ever run the messages
+            for (Message<?> message; (message = poll()) != null; )
+                message.result.completeExceptionally(e);
+            scheduled.set(false);
+            if (!mailbox.isEmpty())
+                schedule();
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Message<?> message = poll();
+            if (message == null)
+                break;
+            message.run();
+        }
+        scheduled.set(false);
+        // a message may arrive between the last poll and releasing the flag
+        if (!mailbox.isEmpty())
+            schedule();
+    }
+}
@@ -0,0 +1,244 @@
+package Engine;
+
+import Engine.EngineException.*;
+import Game.Game;
+import Game.GameProps;
+import Game.GameSnapshot;
+import Game.GameUtils;
+import Game.TurnDelta;
+import Parser.Plan;
+import Player.Player;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * hosts many games at once, every game is an actor and messages are routed by game id.
+ */
+public class GameRegistry implements AutoCloseable {
+    private final Map<Long, GameActor> actors;
+    private final AtomicLong nextId;
+    private final LongFunction<Executor> executors;
+    private final AutoCloseable shutdown;
+    private volatile PlanDeadlines deadlines;
+    private volatile Checkpointer checkpointer;
+    private volatile boolean closed;
+
+    /**
+     * create a registry running games on virtual threads when the runtime supports them
+     */
+    public GameRegistry() {
+        this(defaultExecutor());
+    }
+
+    /**
+     * @param executor executor running the actors, shut down when the registry is closed
+     */
+    public GameRegistry(ExecutorService executor) {
+        this(id -> executor, executor::shutdown);
+    }
+
+    /**
+     * create a registry running every game on its home worker of the scheduler
+     *
+     * @param scheduler scheduler running the actors, closed when the registry is closed
+     */
+    public GameRegistry(GameScheduler scheduler) {
+        this(scheduler::shard, scheduler);
+    }
+
+    private GameRegistry(LongFunction<Executor> executors, AutoCloseable shutdown) {
+        this.actors = new ConcurrentHashMap<>();
+        this.nextId = new AtomicLong(1);
+        this.executors = executors;
+        this.shutdown = shutdown;
+    }
+
+    /**
+     * @return a virtual thread per task executor on Java 21 or later else a work stealing pool
+     */
+    private static ExecutorService defaultExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newWorkStealingPool();
+        }
+    }
+
+    /**
+     * start hosting a game
+     *
+     * @param game game no other thread touches anymore
+     * @return id of the game
+     */
+    public long host(Game game) {
+        if (closed)
+            throw new EngineClosed();
+        long id = nextId.getAndIncrement();
+        host(id, game);
+        return id;
+    }
+
+    private void host(long id, Game game) {
+        GameActor actor = new GameActor(id, game, executors.apply(id));
+        actors.put(id, actor);
+        Checkpointer checkpointer = this.checkpointer;
+        if (checkpointer != null)
+            actor.ask(g -> {
+                checkpointer.attach(id, persistent(g));
+                return null;
+            }).join();
+        PlanDeadlines deadlines = this.deadlines;
+        if (deadlines != null)
+            actor.ask(g -> {
+                deadlines.arm(this, actor, g);
+                return null;
+            });
+    }
+
+    private static GameProps persistent(Game game) {
+        if (!(game instanceof GameProps props))
+            throw new IllegalArgumentException("only GameProps can be checkpointed");
+        return props;
+    }
+
+    /**
+     * enforce plan deadlines on every game hosted after this call
+     */
+    public void enableDeadlines(PlanDeadlines deadlines) {
+        this.deadlines = deadlines;
+    }
+
+    /**
+     * persist every game hosted after this call
+     */
+    public void enableCheckpoints(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * host again every game persisted by the checkpointer under its previous id, and keep persisting them
+     *
+     * @return number of recovered games
+     */
+    public int recover(Checkpointer checkpointer) throws IOException {
+        if (closed)
+            throw new EngineClosed();
+        this.checkpointer = checkpointer;
+        Map<Long, GameProps> games = checkpointer.recover();
+        // a new game must not take over the files of a game that failed to recover
+        for (long id : checkpointer.skipped())
+            nextId.accumulateAndGet(id + 1, Math::max);
+        for (Map.Entry<Long, GameProps> entry : games.entrySet()) {
+            long id = entry.getKey();
+            nextId.accumulateAndGet(id + 1, Math::max);
+            host(id, entry.getValue());
+        }
+        return games.size();
+    }
+
+    /**
+     * create and host a new game
+     *
+     * @param namePlayers names of players in turn order
+     * @return id of the game
+     */
+    public long createGame(List<String> namePlayers) {
+        return host(GameUtils.createGame(namePlayers));
+    }
+
+    /**
+     * stop hosting a game, messages already sent to it still run
+     */
+    public void remove(long gameId) {
+        GameActor actor = actors.remove(gameId);
+        Checkpointer checkpointer = this.checkpointer;
+        if (actor != null && checkpointer != null)
+            actor.ask(g -> {
+                checkpointer.detach(gameId, persistent(g));
+                return null;
+            });
+        PlanDeadlines deadlines = this.deadlines;
+        if (deadlines != null)
+            deadlines.remove(gameId);
+    }
+
+    public int size() {
+        return actors.size();
+    }
+
+    private GameActor actor(long gameId) {
+        GameActor actor = actors.get(gameId);
+        if (actor == null)
+            throw new GameNotFound(gameId);
+        return actor;
+    }
+
+    /**
+     * submit a plan of the current player of a game
+     *
+     * @param gameId id of the game
+     * @param constructionPlan a plan
+     * @return changes made by the plan, completed exceptionally when the plan fails
+     */
+    public CompletableFuture<TurnDelta> submitPlan(long gameId, String constructionPlan) {
+        GameActor actor = actor(gameId);
+        return actor.ask(game -> submitPlan(actor, game, Plan.compile(constructionPlan)));
+    }
+
+    /**
+     * submit a plan already parsed of the current player of a game
+     *
+     * @param gameId id of the game
+     * @param constructionPlan a parsed plan
+     * @return changes made by the plan, completed exceptionally when the plan fails
+     */
+    public CompletableFuture<TurnDelta> submitPlan(long gameId, Plan constructionPlan) {
+        GameActor actor = actor(gameId);
+        return actor.ask(game -> submitPlan(actor, game, constructionPlan));
+    }
+
+    /**
+     * submit a plan on the actor of a game, must run on that actor
+     */
+    TurnDelta submitPlan(GameActor actor, Game game, Plan constructionPlan) {
+        PlanDeadlines deadlines = this.deadlines;
+        Player player = game.getCurrentPlayer();
+        game.submitPlan(constructionPlan);
+        Checkpointer checkpointer = this.checkpointer;
+        if (checkpointer != null)
+            checkpointer.turnEnded(actor.getID(), persistent(game));
+        if (deadlines != null)
+            deadlines.submitted(this, actor, game, player, constructionPlan.source());
+        return game.lastDelta();
+    }
+
+    /**
+     * run an action on a game, serialized with every other message of the game
+     */
+    public <T> CompletableFuture<T> ask(long gameId, Function<Game, T> action) {
+        return actor(gameId).ask(action);
+    }
+
+    /**
+     * read the latest published state of a game without going through its mailbox
+     */
+    public GameSnapshot snapshot(long gameId) {
+        return actor(gameId).snapshot();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            shutdown.close();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
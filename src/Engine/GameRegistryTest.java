@@ -0,0 +1,80 @@
+package Engine;
+
+import Game.Game;
+import Game.GameUtils;
+import Game.TurnDelta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameRegistryTest {
+    @Test
+    public void simultaneousGames() throws Exception {
+        int games = 10000, rounds = 5;
+        try (GameRegistry registry = new GameRegistry()) {
+            List<Long> ids = new ArrayList<>(games);
+            for (int i = 0; i < games; i++)
+                ids.add(registry.createGame(List.of("a" + i, "b" + i)));
+            assertEquals(games, registry.size());
+
+            List<CompletableFuture<TurnDelta>> turns = new ArrayList<>(games * rounds * 2);
+            for (int round = 0; round < rounds; round++) {
+                for (long id : ids) {
+                    turns.add(registry.submitPlan(id, "invest 1"));
+                    turns.add(registry.submitPlan(id, "done"));
+                }
+            }
+            CompletableFuture.allOf(turns.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+            for (long id : ids)
+                assertEquals(rounds + 1, registry.snapshot(id).getTurn());
+        }
+    }
+
+    @Test
+    public void orderedMessages() throws Exception {
+        try (GameRegistry registry = new GameRegistry()) {
+            long id = registry.createGame(List.of("a", "b"));
+            List<CompletableFuture<Long>> turns = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                registry.submitPlan(id, "done");
+                turns.add(registry.ask(id, game -> game.getTurn()));
+            }
+            for (int i = 0; i < turns.size(); i++)
+                assertEquals(1 + (i + 1) / 2, turns.get(i).get());
+        }
+    }
+
+    @Test
+    public void askClosedActor() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        GameActor actor = new GameActor(1, GameUtils.createGame("a", "b"), executor);
+        executor.shutdown();
+        // every message fails, none is left waiting for an actor that can no longer be scheduled
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<Long> turn = actor.ask(Game::getTurn);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> turn.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        }
+        assertEquals(0, actor.pending());
+    }
+
+    @Test
+    public void failedPlan() {
+        try (GameRegistry registry = new GameRegistry()) {
+            long id = registry.createGame(List.of("a", "b"));
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> registry.submitPlan(id, "x = y").get());
+            assertInstanceOf(AST.ASTException.UndefinedIdentifier.class, e.getCause());
+            assertThrows(EngineException.GameNotFound.class, () -> registry.submitPlan(id + 1, "done"));
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package Engine;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * runs tasks on a fixed set of worker threads, one per core by default.
+ * every game is sharded to a home worker so its board stays in the cache of one core,
+ * a worker without work steals the newest task of the most loaded shard whose worker falls behind, that is
+ * with more than {@link #STEAL_DEPTH} tasks waiting or a task waiting longer than {@link #STEAL_AGE_NANOS},
+ * so a game only leaves its home worker when that worker cannot keep up.
+ * a worker without work parks until a task arrives, only one idle worker at a time waits with a deadline for a
+ * task of a busy shard to become old enough to be stolen, so an idle scheduler does not wake up.
+ */
+public class GameScheduler implements AutoCloseable {
+    /**
+     * tasks waiting in a shard over which other workers steal from it
+     */
+    static final int STEAL_DEPTH = 2;
+    /**
+     * time the oldest task of a shard waits before other workers steal from it
+     */
+    static final long STEAL_AGE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    /**
+     * statistics of a shard
+     *
+     * @param queueDepth          tasks waiting in the shard
+     * @param executed            tasks run by the worker of the shard
+     * @param stolen              tasks the worker of the shard stole from other shards
+     * @param averageLatencyNanos average time between submitting a task of the shard and starting it
+     * @param maxLatencyNanos     longest time between submitting a task of the shard and starting it
+     */
+    public record ShardStats(int shard, int queueDepth, long executed, long stolen,
+                             long averageLatencyNanos, long maxLatencyNanos) {
+    }
+
+    private record Task(Runnable runnable, long submittedAt, Shard home) {
+    }
+
+    private final class Shard implements Executor {
+        private final int index;
+        private final Deque<Task> queue = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicLong executed = new AtomicLong();
+        private final AtomicLong stolen = new AtomicLong();
+        private final AtomicLong totalLatency = new AtomicLong();
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong maxLatency = new AtomicLong();
+        private Thread worker;
+        private volatile boolean idle;
+
+        private Shard(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void execute(Runnable runnable) {
+            if (closed)
+                throw new EngineException.EngineClosed();
+            queue.addLast(new Task(runnable, System.nanoTime(), this));
+            depth.incrementAndGet();
+            if (idle)
+                LockSupport.unpark(worker);
+            else if (isBehind() || watchers.get() == 0)
+                wakeIdleWorker(); // to steal the task now or once it is old enough
+        }
+
+        /**
+         * @return true if the worker of the shard does not keep up with its tasks
+         */
+        private boolean isBehind() {
+            if (depth.get() > stealDepth)
+                return true;
+            Task oldest = queue.peekFirst();
+            return oldest != null && System.nanoTime() - oldest.submittedAt > stealAgeNanos;
+        }
+
+        private Task poll() {
+            Task task = queue.pollFirst();
+            if (task != null)
+                depth.decrementAndGet();
+            return task;
+        }
+
+        private Task steal() {
+            Task task = queue.pollLast();
+            if (task != null)
+                depth.decrementAndGet();
+            return task;
+        }
+
+        private void run(Task task) {
+            long latency = System.nanoTime() - task.submittedAt;
+            Shard home = task.home;
+            home.totalLatency.addAndGet(latency);
+            home.started.incrementAndGet();
+            home.maxLatency.accumulateAndGet(latency, Math::max);
+            try {
+                task.runnable.run();
+            } catch (Throwable e) {
+                Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e);
+            }
+            executed.incrementAndGet();
+        }
+
+        private void loop() {
+            while (!closed || depth.get() > 0) {
+                Task task = poll();
+                if (task == null) {
+                    task = stealFromOthers(this);
+                    if (task != null)
+                        stolen.incrementAndGet();
+                }
+                if (task != null) {
+                    run(task);
+                    continue;
+                }
+                idle = true;
+                if (depth.get() == 0 && !closed) {
+                    long wait = untilStealable(this);
+                    if (wait < 0) {
+                        LockSupport.park(this);
+                    } else {
+                        watchers.incrementAndGet();
+                        LockSupport.parkNanos(this, wait);
+                        watchers.decrementAndGet();
+                    }
+                }
+                idle = false;
+            }
+        }
+    }
+
+    private final Shard[] shards;
+    private final int stealDepth;
+    private final long stealAgeNanos;
+    /**
+     * idle workers waiting for a task of another shard to become old enough to be stolen
+     */
+    private final AtomicInteger watchers = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * create a scheduler with one worker per available core
+     */
+    public GameScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public GameScheduler(int workers) {
+        this(workers, STEAL_DEPTH, STEAL_AGE_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param stealDepth tasks waiting in a shard over which other workers steal from it
+     * @param stealAge   time the oldest task of a shard waits before other workers steal from it
+     */
+    GameScheduler(int workers, int stealDepth, long stealAge, TimeUnit unit) {
+        if (workers < 1)
+            throw new IllegalArgumentException("at least one worker required");
+        this.stealDepth = stealDepth;
+        this.stealAgeNanos = unit.toNanos(stealAge);
+        shards = new Shard[workers];
+        for (int i = 0; i < workers; i++)
+            shards[i] = new Shard(i);
+        for (Shard shard : shards) {
+            shard.worker = new Thread(shard::loop, "game-worker-" + shard.index);
+            shard.worker.setDaemon(true);
+            shard.worker.start();
+        }
+    }
+
+    public int workers() {
+        return shards.length;
+    }
+
+    /**
+     * @param key key of a game, usually its id
+     * @return executor running tasks on the home worker of the game
+     */
+    public Executor shard(long key) {
+        return shards[(int) Math.floorMod(key, (long) shards.length)];
+    }
+
+    private Task stealFromOthers(Shard thief) {
+        Shard victim = null;
+        int victimDepth = 0;
+        for (Shard shard : shards) {
+            int depth = shard.depth.get();
+            if (shard != thief && depth > victimDepth && shard.isBehind()) {
+                victim = shard;
+                victimDepth = depth;
+            }
+        }
+        return victim == null ? null : victim.steal();
+    }
+
+    /**
+     * @return nanoseconds until the oldest task waiting in another shard can be stolen, `-1` if no task waits
+     */
+    private long untilStealable(Shard thief) {
+        long now = System.nanoTime();
+        long wait = -1;
+        for (Shard shard : shards) {
+            Task oldest = shard == thief ? null : shard.queue.peekFirst();
+            if (oldest == null)
+                continue;
+            long remaining = Math.max(0, stealAgeNanos - (now - oldest.submittedAt));
+            if (wait < 0 || remaining < wait)
+                wait = remaining;
+        }
+        return wait;
+    }
+
+    private void wakeIdleWorker() {
+        for (Shard shard : shards) {
+            if (shard.idle) {
+                LockSupport.unpark(shard.worker);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return statistics of every shard
+     */
+    public List<ShardStats> stats() {
+        List<ShardStats> stats = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            long started = shard.started.get();
+            stats.add(new ShardStats(
+                    shard.index,
+                    shard.depth.get(),
+                    shard.executed.get(),
+                    shard.stolen.get(),
+                    started == 0 ? 0 : shard.totalLatency.get() / started,
+                    shard.maxLatency.get()
+            ));
+        }
+        return stats;
+    }
+
+    /**
+     * stop accepting tasks, workers finish the tasks already submitted
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Shard shard : shards)
+            LockSupport.unpark(shard.worker);
+    }
+
+    /**
+     * wait for the workers to finish the tasks submitted before {@link #close()}
+     *
+     * @return false if the timeout elapsed before every worker stopped
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Shard shard : shards) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                return false;
+            TimeUnit.NANOSECONDS.timedJoin(shard.worker, remaining);
+            if (shard.worker.isAlive())
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,102 @@
+package Engine;
+
+import Game.TurnDelta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameSchedulerTest {
+    private static CompletableFuture<String> workerName(Executor shard) {
+        CompletableFuture<String> name = new CompletableFuture<>();
+        shard.execute(() -> name.complete(Thread.currentThread().getName()));
+        return name;
+    }
+
+    /**
+     * hold the worker of a shard until the latch is released
+     */
+    private static void hold(Executor shard, CountDownLatch release) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        shard.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void homeWorker() throws Exception {
+        // tasks are never too old to wait for their home worker, only the queue depth lets them be stolen
+        try (GameScheduler scheduler = new GameScheduler(4, 2, Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+            assertSame(scheduler.shard(1), scheduler.shard(5));
+            assertNotSame(scheduler.shard(1), scheduler.shard(2));
+            Executor shard = scheduler.shard(2);
+
+            CountDownLatch release = new CountDownLatch(1);
+            hold(shard, release);
+            List<CompletableFuture<String>> names = List.of(workerName(shard), workerName(shard));
+            release.countDown();
+            for (CompletableFuture<String> name : names)
+                assertEquals("game-worker-2", name.get(5, TimeUnit.SECONDS));
+
+            CountDownLatch held = new CountDownLatch(1);
+            hold(shard, held);
+            workerName(shard);
+            workerName(shard);
+            // the third task waiting puts the shard behind, another worker takes it while the home worker is held
+            assertNotEquals("game-worker-2", workerName(shard).get(5, TimeUnit.SECONDS));
+            held.countDown();
+        }
+    }
+
+    @Test
+    public void stealUnevenLoad() throws Exception {
+        GameScheduler scheduler = new GameScheduler(4);
+        int tasks = 200;
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            scheduler.shard(0).execute(() -> {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ignored) {
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        scheduler.close();
+        assertTrue(scheduler.awaitTermination(5, TimeUnit.SECONDS));
+        List<GameScheduler.ShardStats> stats = scheduler.stats();
+        assertEquals(tasks, stats.stream().mapToLong(GameScheduler.ShardStats::executed).sum());
+        assertTrue(stats.stream().skip(1).anyMatch(shard -> shard.stolen() > 0), "no task stolen");
+        assertEquals(0, stats.get(0).queueDepth());
+        assertTrue(stats.get(0).maxLatencyNanos() >= stats.get(0).averageLatencyNanos());
+    }
+
+    @Test
+    public void registryOnScheduler() throws Exception {
+        try (GameRegistry registry = new GameRegistry(new GameScheduler(2))) {
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < 100; i++)
+                ids.add(registry.createGame(List.of("a", "b")));
+            List<CompletableFuture<TurnDelta>> turns = new ArrayList<>();
+            for (long id : ids) {
+                turns.add(registry.submitPlan(id, "done"));
+                turns.add(registry.submitPlan(id, "done"));
+            }
+            CompletableFuture.allOf(turns.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+            for (long id : ids)
+                assertEquals(2, registry.snapshot(id).getTurn());
+        }
+    }
+}
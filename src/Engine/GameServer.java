@@ -0,0 +1,508 @@
+package Engine;
+
+import Game.GameSnapshot;
+import Game.TurnDelta;
+import Game.Varints;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * serves the games of a registry over TCP with the {@link Protocol}. a few event loops each own a selector
+ * and the connections assigned to them, requests are decoded on the loops and handed to the registry, and
+ * responses are encoded into pooled direct buffers by whichever thread completes them and written by the
+ * loop of the connection with gathering writes, so a connection costs no thread and no buffer while idle.
+ * work proportional to a board, creating a game or sizing its STATE, runs on the common pool, and a STATE
+ * is encoded into pooled buffers only as fast as the client reads it. a connection stops being read while
+ * too many of its response bytes wait to be written.
+ */
+public class GameServer implements AutoCloseable {
+    private static final int RESPONSE_BUFFER_SIZE = 4096;
+    private static final int MAX_GATHER = 16;
+    /**
+     * queued response bytes over which a connection is no longer read
+     */
+    private static final long HIGH_WATER = 1 << 20;
+    /**
+     * queued response bytes under which a paused connection is read again
+     */
+    private static final long LOW_WATER = 1 << 18;
+    /**
+     * time a plan submitted to a game created by the server may run
+     */
+    public static final Duration PLAN_TIMEOUT = Duration.ofSeconds(1);
+
+    private final GameRegistry registry;
+    private final PlanPipeline pipeline;
+    private final ServerSocketChannel server;
+    private final EventLoop[] loops;
+    private final BufferPool frames;
+    private final BufferPool responses;
+    private final AtomicInteger nextLoop;
+    private final AtomicInteger connections;
+    private final AtomicInteger paused;
+    private volatile boolean closed;
+
+    /**
+     * start serving, the registry and the pipeline are not closed with the server
+     *
+     * @param pipeline pipeline parsing and submitting the plans of the registry
+     * @param address  address to listen on, port 0 for any free port
+     * @param threads  number of event loops
+     */
+    public GameServer(GameRegistry registry, PlanPipeline pipeline, InetSocketAddress address, int threads) throws IOException {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive");
+        this.registry = registry;
+        this.pipeline = pipeline;
+        this.frames = new BufferPool(Protocol.MAX_REQUEST + 4, 256);
+        this.responses = new BufferPool(RESPONSE_BUFFER_SIZE, 4096);
+        this.nextLoop = new AtomicInteger();
+        this.connections = new AtomicInteger();
+        this.paused = new AtomicInteger();
+        this.server = ServerSocketChannel.open();
+        this.loops = new EventLoop[threads];
+        try {
+            server.bind(address, 4096);
+            server.configureBlocking(false);
+            for (int i = 0; i < threads; i++)
+                loops[i] = new EventLoop(i);
+            server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            stop();
+            throw e;
+        }
+        for (EventLoop loop : loops)
+            loop.thread.start();
+    }
+
+    /**
+     * @return port the server listens on
+     */
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * @return number of open client connections
+     */
+    public int connections() {
+        return connections.get();
+    }
+
+    /**
+     * @return number of connections not read until their responses are written
+     */
+    int pausedConnections() {
+        return paused.get();
+    }
+
+    /**
+     * a client connection, only touched by its loop except for the queue of responses
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+        /**
+         * STATE responses in the order of their requests, each written once it is sized
+         */
+        private final Queue<CompletableFuture<Protocol.StateEncoder>> states = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        /**
+         * bytes of the responses queued and not written yet
+         */
+        private final AtomicLong queued = new AtomicLong();
+        private final ArrayDeque<ByteBuffer> writing = new ArrayDeque<>();
+        private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+        private SelectionKey key;
+        private ByteBuffer partial;
+        /**
+         * STATE being written, no other response is written until it is complete
+         */
+        private Protocol.StateEncoder state;
+        private boolean readPaused;
+        private volatile boolean closed;
+
+        private Connection(SocketChannel channel, EventLoop loop) {
+            this.channel = channel;
+            this.loop = loop;
+        }
+
+        /**
+         * queue a response, safe to call from any thread
+         */
+        private void send(ByteBuffer response) {
+            if (closed) {
+                release(response);
+                return;
+            }
+            queued.addAndGet(response.flip().remaining());
+            outbound.add(response);
+            scheduleFlush();
+        }
+
+        /**
+         * queue the STATE of a game, sized on the common pool and encoded while it is written. only called by
+         * the loop of the connection
+         */
+        private void sendState(int requestId, GameSnapshot snapshot) {
+            CompletableFuture<Protocol.StateEncoder> response = CompletableFuture.supplyAsync(() -> {
+                Protocol.StateEncoder state = new Protocol.StateEncoder(requestId, snapshot);
+                queued.addAndGet(state.size());
+                return state;
+            }, ForkJoinPool.commonPool());
+            states.add(response);
+            response.whenComplete((state, e) -> {
+                if (e != null)
+                    error(requestId, message(e));
+                else
+                    scheduleFlush();
+            });
+        }
+
+        private void scheduleFlush() {
+            if (flushScheduled.compareAndSet(false, true))
+                loop.execute(this::flush);
+        }
+
+        private void flush() {
+            flushScheduled.set(false);
+            if (closed)
+                return;
+            try {
+                while (true) {
+                    if (state == null) {
+                        for (ByteBuffer response; writing.size() < MAX_GATHER && (response = outbound.poll()) != null; )
+                            writing.add(response);
+                        // a STATE that failed to be sized was answered by an error
+                        for (CompletableFuture<Protocol.StateEncoder> next; state == null && writing.size() < MAX_GATHER
+                                && (next = states.peek()) != null && next.isDone(); states.poll())
+                            state = next.isCompletedExceptionally() ? null : next.join();
+                    }
+                    while (state != null && writing.size() < MAX_GATHER) {
+                        ByteBuffer chunk = responses.acquire();
+                        if (state.encode(chunk))
+                            state = null;
+                        writing.add(chunk.flip());
+                    }
+                    if (writing.isEmpty())
+                        break;
+                    int count = 0;
+                    for (ByteBuffer buffer : writing)
+                        gather[count++] = buffer;
+                    queued.addAndGet(-channel.write(gather, 0, count));
+                    while (!writing.isEmpty() && !writing.peek().hasRemaining())
+                        release(writing.poll());
+                    if (!writing.isEmpty()) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                if (readPaused && queued.get() < LOW_WATER)
+                    resumeRead();
+            } catch (IOException | CancelledKeyException e) {
+                close();
+            }
+        }
+
+        private void pauseRead() {
+            readPaused = true;
+            paused.incrementAndGet();
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+
+        private void resumeRead() {
+            readPaused = false;
+            paused.decrementAndGet();
+            // the frames read before the pause come first
+            if (partial != null)
+                decode(partial.flip());
+            if (!readPaused && !closed)
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+
+        private void read() {
+            ByteBuffer in = partial != null ? partial : loop.readBuffer;
+            try {
+                if (channel.read(in) < 0) {
+                    close();
+                    return;
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            decode(in.flip());
+        }
+
+        /**
+         * handle the complete frames of a buffer ready to be read, the rest is kept for the next read
+         */
+        private void decode(ByteBuffer in) {
+            while (in.remaining() >= 4) {
+                if (queued.get() > HIGH_WATER) {
+                    pauseRead();
+                    break;
+                }
+                int length = in.getInt(in.position());
+                if (length < Protocol.HEADER_SIZE - 4 || length > Protocol.MAX_REQUEST) {
+                    error(0, "invalid frame length " + length);
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    in.clear();
+                    closeAfterFlush();
+                    return;
+                }
+                if (in.remaining() < 4 + length)
+                    break;
+                ByteBuffer frame = in.slice(in.position() + 4, length);
+                in.position(in.position() + 4 + length);
+                handle(this, frame);
+            }
+            if (in.hasRemaining()) {
+                if (in == loop.readBuffer) {
+                    partial = frames.acquire().put(in);
+                    in.clear();
+                } else {
+                    in.compact();
+                }
+            } else if (in == partial) {
+                frames.release(partial);
+                partial = null;
+            } else {
+                in.clear();
+            }
+        }
+
+        private void error(int requestId, String message) {
+            ByteBuffer response = responses.acquire(Protocol.HEADER_SIZE + Protocol.maxStringSize(message));
+            int start = Protocol.begin(response, Protocol.ERROR, requestId);
+            Protocol.putString(response, message);
+            Protocol.end(response, start);
+            send(response);
+        }
+
+        private void closeAfterFlush() {
+            loop.execute(() -> {
+                flush();
+                close();
+            });
+        }
+
+        private void close() {
+            if (closed)
+                return;
+            closed = true;
+            connections.decrementAndGet();
+            if (readPaused)
+                paused.decrementAndGet();
+            state = null;
+            states.clear();
+            if (key != null)
+                key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            if (partial != null)
+                frames.release(partial);
+            partial = null;
+            for (ByteBuffer buffer : writing)
+                release(buffer);
+            writing.clear();
+            for (ByteBuffer buffer; (buffer = outbound.poll()) != null; )
+                release(buffer);
+        }
+    }
+
+    private void release(ByteBuffer buffer) {
+        responses.release(buffer);
+    }
+
+    private void handle(Connection connection, ByteBuffer frame) {
+        byte type = frame.get();
+        int requestId = frame.getInt();
+        try {
+            switch (type) {
+                case Protocol.CREATE -> {
+                    List<String> names = Protocol.readCreate(frame);
+                    CompletableFuture.supplyAsync(() -> registry.createGame(names), ForkJoinPool.commonPool())
+                            .thenCompose(gameId -> registry.ask(gameId, game -> {
+                                game.setExecutionTimeout(PLAN_TIMEOUT);
+                                return gameId;
+                            }))
+                            .whenComplete((gameId, e) -> {
+                                if (e != null) {
+                                    connection.error(requestId, message(e));
+                                    return;
+                                }
+                                ByteBuffer response = responses.acquire();
+                                int start = Protocol.begin(response, Protocol.CREATED, requestId);
+                                Varints.putLong(response, gameId);
+                                Protocol.end(response, start);
+                                connection.send(response);
+                            });
+                }
+                case Protocol.SUBMIT -> {
+                    long gameId = Varints.getLong(frame);
+                    String plan = Protocol.getString(frame);
+                    GameSnapshot players = registry.snapshot(gameId);
+                    CompletableFuture<TurnDelta> turn = pipeline.trySubmit(gameId, plan);
+                    if (turn == null) {
+                        connection.error(requestId, "server busy");
+                        return;
+                    }
+                    turn.whenComplete((delta, e) -> {
+                        if (e != null) {
+                            connection.error(requestId, message(e));
+                            return;
+                        }
+                        ByteBuffer response = responses.acquire(Protocol.maxTurnSize(delta));
+                        Protocol.turn(response, requestId, delta, players);
+                        connection.send(response);
+                    });
+                }
+                case Protocol.STATE -> connection.sendState(requestId, registry.snapshot(Varints.getLong(frame)));
+                default -> connection.error(requestId, "unknown request type " + type);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            connection.error(requestId, "malformed request");
+        } catch (RuntimeException e) {
+            connection.error(requestId, message(e));
+        }
+    }
+
+    private static String message(Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null)
+            e = e.getCause();
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    /**
+     * a thread waiting on its selector, the first loop also accepts the connections
+     */
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer readBuffer;
+
+        private EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "game-server-" + index);
+            this.readBuffer = ByteBuffer.allocateDirect(Protocol.MAX_REQUEST + 4);
+        }
+
+        /**
+         * run a task on the loop, safe to call from any thread
+         */
+        private void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    selector.select();
+                    for (Runnable task; (task = tasks.poll()) != null; )
+                        task.run();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid())
+                            continue;
+                        if (key.isAcceptable())
+                            accept();
+                        else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable())
+                                connection.read();
+                            if (key.isValid() && key.isWritable())
+                                connection.flush();
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (!closed)
+                    throw new IllegalStateException("event loop failed", e);
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection connection)
+                        connection.close();
+                }
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private void accept() throws IOException {
+            for (SocketChannel accepted; (accepted = server.accept()) != null; ) {
+                SocketChannel channel = accepted;
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+                Connection connection = new Connection(channel, loop);
+                connections.incrementAndGet();
+                loop.execute(() -> {
+                    try {
+                        connection.key = channel.register(loop.selector, SelectionKey.OP_READ, connection);
+                    } catch (ClosedChannelException e) {
+                        connection.close();
+                    }
+                });
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    private void stop() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+        for (EventLoop loop : loops) {
+            if (loop == null)
+                continue;
+            loop.selector.wakeup();
+            if (loop.thread.isAlive() && loop.thread != Thread.currentThread()) {
+                try {
+                    loop.thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (!loop.thread.isAlive()) {
+                try {
+                    loop.selector.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
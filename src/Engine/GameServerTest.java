@@ -0,0 +1,222 @@
+package Engine;
+
+import Game.GameSnapshot;
+import Game.GameUtils;
+import Game.Varints;
+import Region.Point;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameServerTest {
+    /**
+     * blocking client of the protocol
+     */
+    private static final class Client implements AutoCloseable {
+        private final SocketChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocate(1 << 16);
+
+        private Client(int port) throws IOException {
+            channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        }
+
+        private void send() throws IOException {
+            out.flip();
+            while (out.hasRemaining())
+                channel.write(out);
+            out.clear();
+        }
+
+        /**
+         * @return body of the next response, positioned after the request id
+         */
+        private ByteBuffer receive(byte type, int requestId) throws IOException {
+            ByteBuffer length = readFully(ByteBuffer.allocate(4));
+            ByteBuffer frame = readFully(ByteBuffer.allocate(length.getInt()));
+            byte actual = frame.get();
+            assertEquals(requestId, frame.getInt());
+            if (actual == Protocol.ERROR && type != Protocol.ERROR)
+                fail("request failed: " + Protocol.getString(frame));
+            assertEquals(type, actual);
+            return frame;
+        }
+
+        private ByteBuffer readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0)
+                    throw new IOException("connection closed");
+            }
+            return buffer.flip();
+        }
+
+        private long create(int requestId, List<String> names) throws IOException {
+            Protocol.create(out, requestId, names);
+            send();
+            return Varints.getLong(receive(Protocol.CREATED, requestId));
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static GameServer server(GameRegistry registry, PlanPipeline pipeline, int threads) throws IOException {
+        return new GameServer(registry, pipeline, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), threads);
+    }
+
+    @Test
+    public void playOverLoopback() throws IOException {
+        try (GameRegistry registry = new GameRegistry();
+             PlanPipeline pipeline = new PlanPipeline(registry, 100);
+             GameServer server = server(registry, pipeline, 2);
+             Client client = new Client(server.port())) {
+            long gameId = client.create(1, List.of("a", "b"));
+            GameSnapshot snapshot = registry.snapshot(gameId);
+
+            Protocol.state(client.out, 2, gameId);
+            client.send();
+            ByteBuffer state = client.receive(Protocol.STATE, 2);
+            long rows = Varints.getLong(state), cols = Varints.getLong(state);
+            assertEquals(snapshot.rows(), rows);
+            assertEquals(snapshot.cols(), cols);
+            assertEquals(1, Varints.getLong(state));
+            assertEquals(1, Varints.getLong(state)); // first player to play
+            assertEquals(0, Varints.getLong(state)); // no winner
+            assertEquals(2, Varints.getLong(state));
+            assertEquals(snapshot.budget(snapshot.getPlayers().get(0)), Varints.getLong(state));
+            Varints.getLong(state);
+            int cityCenters = 0;
+            for (int i = 0; i < rows * cols; i++) {
+                cityCenters += (int) (Varints.getLong(state) & 1);
+                Varints.getLong(state);
+            }
+            assertEquals(2, cityCenters);
+            assertFalse(state.hasRemaining());
+
+            // pipelined requests, answered in order for one game
+            Protocol.submit(client.out, 3, gameId, "invest 100 move up");
+            Protocol.submit(client.out, 4, gameId, "done");
+            client.send();
+            ByteBuffer turn = client.receive(Protocol.TURN, 3);
+            assertEquals(1, Varints.getLong(turn));
+            assertEquals(1, Varints.getLong(turn));
+            long budgets = Varints.getLong(turn);
+            assertEquals(1, budgets);
+            assertEquals(0, Varints.getLong(turn));
+            long budget = Varints.getLong(turn);
+            long cells = Varints.getLong(turn);
+            assertTrue(cells >= 1);
+            for (long i = 0; i < cells; i++) {
+                long cell = Varints.getLong(turn);
+                long owner = Varints.getLong(turn);
+                long deposit = Varints.getLong(turn);
+                Point point = Point.of(cell % cols, cell / cols);
+                assertEquals(1, owner >> 1);
+                assertTrue(deposit > 0 || point.equals(snapshot.cityCrewLocation()));
+            }
+            // from the city center and one step up, unless the city center is on the top edge
+            long moves = Varints.getLong(turn);
+            assertTrue(moves == 1 || moves == 2);
+            client.receive(Protocol.TURN, 4);
+            assertEquals(budget, registry.snapshot(gameId).budget(snapshot.getPlayers().get(0)));
+            assertEquals(2, registry.snapshot(gameId).getTurn());
+
+            Protocol.submit(client.out, 5, gameId + 1, "done");
+            Protocol.submit(client.out, 6, gameId, "x = y");
+            client.send();
+            assertEquals("game " + (gameId + 1) + " not found", Protocol.getString(client.receive(Protocol.ERROR, 5)));
+            assertNotNull(Protocol.getString(client.receive(Protocol.ERROR, 6)));
+        }
+    }
+
+    @Test
+    public void rejectInvalidFrame() throws IOException {
+        try (GameRegistry registry = new GameRegistry();
+             PlanPipeline pipeline = new PlanPipeline(registry, 100);
+             GameServer server = server(registry, pipeline, 1);
+             Client client = new Client(server.port())) {
+            int start = Protocol.begin(client.out, (byte) 42, 7);
+            Protocol.end(client.out, start);
+            client.send();
+            assertTrue(Protocol.getString(client.receive(Protocol.ERROR, 7)).startsWith("unknown request"));
+
+            client.out.putInt(Protocol.MAX_REQUEST + 1);
+            client.send();
+            client.receive(Protocol.ERROR, 0);
+            assertThrows(IOException.class, () -> client.readFully(ByteBuffer.allocate(1)));
+        }
+    }
+
+    @Test
+    public void pauseClientNotReading() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            try (GameRegistry registry = new GameRegistry();
+                 PlanPipeline pipeline = new PlanPipeline(registry, 100);
+                 GameServer server = server(registry, pipeline, 1);
+                 Client client = new Client(server.port())) {
+                long gameId = registry.host(GameUtils.createCustomGame("m=600 n=600", List.of("a", "b")));
+                // pipelined STATE requests without reading the responses until the server stops reading
+                int requests = 0;
+                while (server.pausedConnections() == 0) {
+                    Protocol.state(client.out, ++requests, gameId);
+                    client.send();
+                    Thread.sleep(20);
+                }
+                for (int i = 1; i <= requests; i++) {
+                    ByteBuffer state = client.receive(Protocol.STATE, i);
+                    assertEquals(600, Varints.getLong(state));
+                    assertEquals(600, Varints.getLong(state));
+                }
+                while (server.pausedConnections() > 0)
+                    Thread.sleep(10);
+                Protocol.state(client.out, 0, gameId);
+                client.send();
+                client.receive(Protocol.STATE, 0);
+            }
+        });
+    }
+
+    @Test
+    public void thousandsOfConnections() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            int count = 2000;
+            try (GameRegistry registry = new GameRegistry();
+                 PlanPipeline pipeline = new PlanPipeline(registry, 4 * count);
+                 GameServer server = server(registry, pipeline, 2)) {
+                List<Client> clients = new ArrayList<>(count);
+                try {
+                    for (int i = 0; i < count; i++)
+                        clients.add(new Client(server.port()));
+                    for (int i = 0; i < count; i++) {
+                        Protocol.create(clients.get(i).out, i, List.of("a" + i, "b" + i));
+                        clients.get(i).send();
+                    }
+                    long[] games = new long[count];
+                    for (int i = 0; i < count; i++)
+                        games[i] = Varints.getLong(clients.get(i).receive(Protocol.CREATED, i));
+                    assertEquals(count, server.connections());
+                    for (int i = 0; i < count; i++) {
+                        Protocol.submit(clients.get(i).out, i, games[i], "invest 1");
+                        clients.get(i).send();
+                    }
+                    for (int i = 0; i < count; i++)
+                        clients.get(i).receive(Protocol.TURN, i);
+                } finally {
+                    for (Client client : clients)
+                        client.close();
+                }
+                assertEquals(count, registry.size());
+            }
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package Engine;
+
+import Game.Configuration;
+import Game.Game;
+import Parser.Plan;
+import Player.Player;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * enforces the plan deadlines of the configuration on hosted games.
+ * the first plan of a player must arrive within the initial plan time and every later plan
+ * within the revision plan time, otherwise the default action submits a plan for the player through the
+ * registry hosting the game, like any plan the player submits.
+ */
+public class PlanDeadlines {
+    /**
+     * chooses the plan submitted for a player who missed the deadline
+     */
+    @FunctionalInterface
+    public interface DefaultAction {
+        /**
+         * @param lastPlan latest plan the player submitted, `null` if none
+         * @return plan to submit for the player
+         */
+        String plan(Game game, Player player, String lastPlan);
+
+        DefaultAction DONE = (game, player, lastPlan) -> "done";
+        DefaultAction REUSE_LAST_PLAN = (game, player, lastPlan) -> lastPlan != null ? lastPlan : "done";
+    }
+
+    /**
+     * deadline state of a game, only touched by the actor of the game
+     */
+    private static final class State {
+        private final Map<Player, String> lastPlans = new HashMap<>();
+        private final Set<Player> started = new HashSet<>();
+        private TimingWheel.Timeout timeout;
+        private long sequence;
+    }
+
+    private final TimingWheel wheel;
+    private final DefaultAction action;
+    private final Map<Long, State> states;
+
+    public PlanDeadlines(TimingWheel wheel, DefaultAction action) {
+        this.wheel = wheel;
+        this.action = action;
+        this.states = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return time allowed to the current player to submit a plan in nanoseconds
+     */
+    private static long allowedNanos(Configuration config, boolean firstPlan) {
+        long minutes = firstPlan ? config.initialPlanMinutes() : config.revisionPlanMinutes();
+        long seconds = firstPlan ? config.initialPlanSeconds() : config.revisionPlanSeconds();
+        return TimeUnit.SECONDS.toNanos(minutes * 60 + seconds);
+    }
+
+    /**
+     * start the deadline of the current player, must run on the actor of the game
+     */
+    void arm(GameRegistry registry, GameActor actor, Game game) {
+        State state = states.computeIfAbsent(actor.getID(), id -> new State());
+        if (state.timeout != null)
+            state.timeout.cancel();
+        long sequence = ++state.sequence;
+        if (game.winner() != null) {
+            states.remove(actor.getID());
+            return;
+        }
+        Player player = game.getCurrentPlayer();
+        boolean firstPlan = state.started.add(player);
+        state.timeout = wheel.schedule(
+                () -> actor.ask(g -> expire(registry, actor, g, sequence)),
+                allowedNanos(game.getConfiguration(), firstPlan),
+                TimeUnit.NANOSECONDS
+        );
+    }
+
+    /**
+     * record a plan submitted in time and start the deadline of the next player, must run on the actor of the game
+     */
+    void submitted(GameRegistry registry, GameActor actor, Game game, Player player, String constructionPlan) {
+        State state = states.computeIfAbsent(actor.getID(), id -> new State());
+        state.lastPlans.put(player, constructionPlan);
+        arm(registry, actor, game);
+    }
+
+    /**
+     * stop tracking a game
+     */
+    void remove(long gameId) {
+        State state = states.remove(gameId);
+        if (state != null && state.timeout != null)
+            state.timeout.cancel();
+    }
+
+    private Void expire(GameRegistry registry, GameActor actor, Game game, long sequence) {
+        State state = states.get(actor.getID());
+        if (state == null || state.sequence != sequence)
+            return null; // the plan arrived before the expiry was processed
+        Player player = game.getCurrentPlayer();
+        String plan = action.plan(game, player, state.lastPlans.get(player));
+        // submitted like a plan of the player, so the turn is checkpointed and the next deadline armed
+        try {
+            registry.submitPlan(actor, game, Plan.compile(plan));
+        } catch (RuntimeException e) {
+            registry.submitPlan(actor, game, Plan.compile("done"));
+        }
+        return null;
+    }
+}
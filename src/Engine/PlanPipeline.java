@@ -0,0 +1,91 @@
+package Engine;
+
+import Game.TurnDelta;
+import Parser.Plan;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * processes plan submissions in two stages. plans are tokenized and parsed on a pool of workers as soon as
+ * they arrive, only the execution is serialized per game, in the order the plans were submitted.
+ * the number of submissions in flight is bounded, submitting blocks until a previous submission completes.
+ */
+public class PlanPipeline implements AutoCloseable {
+    private final GameRegistry registry;
+    private final ExecutorService parsers;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final Map<Long, CompletableFuture<TurnDelta>> tails;
+
+    /**
+     * @param maxInFlight maximum number of submissions parsed or waiting to be executed
+     */
+    public PlanPipeline(GameRegistry registry, int maxInFlight) {
+        this(registry, Executors.newWorkStealingPool(), maxInFlight);
+    }
+
+    /**
+     * @param parsers pool running the parse stage, shut down when the pipeline is closed
+     */
+    public PlanPipeline(GameRegistry registry, ExecutorService parsers, int maxInFlight) {
+        this.registry = registry;
+        this.parsers = parsers;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.tails = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * submit a plan of the current player of a game, blocks while the pipeline is full
+     *
+     * @return changes made by the plan, completed exceptionally when parsing or executing the plan fails
+     */
+    public CompletableFuture<TurnDelta> submit(long gameId, String constructionPlan) throws InterruptedException {
+        inFlight.acquire();
+        return enqueue(gameId, constructionPlan);
+    }
+
+    /**
+     * submit a plan of the current player of a game unless the pipeline is full
+     *
+     * @return `null` if the pipeline is full else changes made by the plan
+     */
+    public CompletableFuture<TurnDelta> trySubmit(long gameId, String constructionPlan) {
+        if (!inFlight.tryAcquire())
+            return null;
+        return enqueue(gameId, constructionPlan);
+    }
+
+    private CompletableFuture<TurnDelta> enqueue(long gameId, String constructionPlan) {
+        CompletableFuture<Plan> parsed;
+        try {
+            parsed = CompletableFuture.supplyAsync(() -> Plan.compile(constructionPlan), parsers);
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw new EngineException.EngineClosed();
+        }
+        CompletableFuture<TurnDelta> result = tails.compute(gameId, (id, previous) -> {
+            CompletableFuture<?> after = previous == null ? CompletableFuture.completedFuture(null)
+                    : previous.exceptionally(e -> null);
+            return after.thenCompose(ignored -> parsed)
+                    .thenCompose(plan -> registry.submitPlan(gameId, plan));
+        });
+        return result.whenComplete((delta, e) -> {
+            inFlight.release();
+            tails.remove(gameId, result);
+        });
+    }
+
+    /**
+     * @return number of submissions parsed or waiting to be executed
+     */
+    public int inFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        parsers.shutdown();
+    }
+}
@@ -0,0 +1,62 @@
+package Engine;
+
+import Game.TurnDelta;
+import Parser.ParserException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlanPipelineTest {
+    @Test
+    public void executeInSubmissionOrder() throws Exception {
+        try (GameRegistry registry = new GameRegistry(); PlanPipeline pipeline = new PlanPipeline(registry, 16)) {
+            long id = registry.createGame(List.of("a", "b"));
+            List<CompletableFuture<TurnDelta>> turns = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                // long plans take longer to parse than short ones
+                String plan = i % 2 == 0 ? "x = 1 ".repeat(500) + "done" : "done";
+                turns.add(pipeline.submit(id, plan));
+            }
+            CompletableFuture.allOf(turns.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+            for (int i = 0; i < turns.size(); i++) {
+                TurnDelta delta = turns.get(i).get();
+                assertEquals(1 + i / 2, delta.getTurn());
+                assertEquals(i % 2 == 0 ? "a" : "b", delta.getPlayer().getName());
+            }
+            assertEquals(0, pipeline.inFlight());
+        }
+    }
+
+    @Test
+    public void failedParse() throws Exception {
+        try (GameRegistry registry = new GameRegistry(); PlanPipeline pipeline = new PlanPipeline(registry, 4)) {
+            long id = registry.createGame(List.of("a", "b"));
+            CompletableFuture<TurnDelta> failed = pipeline.submit(id, "move nowhere");
+            CompletableFuture<TurnDelta> next = pipeline.submit(id, "done");
+            ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+            assertInstanceOf(ParserException.InvalidDirection.class, e.getCause());
+            assertEquals("a", next.get().getPlayer().getName());
+        }
+    }
+
+    @Test
+    public void backpressure() throws Exception {
+        try (GameRegistry registry = new GameRegistry(); PlanPipeline pipeline = new PlanPipeline(registry, 1)) {
+            long id = registry.createGame(List.of("a", "b"));
+            CompletableFuture<Void> blocked = new CompletableFuture<>();
+            registry.ask(id, game -> blocked.join());
+            CompletableFuture<TurnDelta> first = pipeline.submit(id, "done");
+            assertNull(pipeline.trySubmit(id, "done"));
+            assertEquals(1, pipeline.inFlight());
+            blocked.complete(null);
+            first.get(5, TimeUnit.SECONDS);
+            pipeline.submit(id, "done").get(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package Engine;
+
+import Game.GameSnapshot;
+import Game.TurnDelta;
+import Game.Varints;
+import Player.Player;
+import Region.Point;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * binary protocol of the {@link GameServer}. every message is a frame:
+ * <pre>
+ * length (4 bytes) type (1 byte) requestId (4 bytes) body
+ * </pre>
+ * the length counts the bytes following it, a response carries the id of its request. in the bodies every
+ * number is a varint, strings are a varint length followed by UTF-8 bytes and slots are player index + 1
+ * with 0 for no player:
+ * <pre>
+ * CREATE   playerCount (name)*              answered by CREATED gameId
+ * SUBMIT   gameId plan                      answered by TURN
+ * STATE    gameId                           answered by STATE
+ * TURN     playedTurn playerSlot budgetCount (playerIndex budget)*
+ *          cellCount (cell ownerSlot &lt;&lt; 1 | cityCenter deposit)* moveCount (cell)*
+ * STATE    rows cols turn currentSlot winnerSlot playerCount (budget)* then for every cell in row order
+ *          ownerSlot &lt;&lt; 1 | cityCenter, deposit
+ * ERROR    message                          answers any request that failed
+ * </pre>
+ * a bot run by a {@link BotMatch} receives the STATE of the game with request id 0, then the TURN of every
+ * turn with request id 0, and answers every PLAY with a PLAN holding the same request id. a bot that falls
+ * behind misses TURNs and receives the STATE again with request id 0:
+ * <pre>
+ * PLAY     playerIndex turn                 the bot plays the current turn
+ * PLAN     plan                             construction plan of the bot
+ * </pre>
+ */
+public final class Protocol {
+    public static final byte CREATE = 1;
+    public static final byte SUBMIT = 2;
+    public static final byte STATE = 3;
+    public static final byte CREATED = 4;
+    public static final byte TURN = 5;
+    public static final byte ERROR = 6;
+    public static final byte PLAY = 7;
+    public static final byte PLAN = 8;
+
+    /**
+     * size of the length, type and request id of a frame
+     */
+    public static final int HEADER_SIZE = 9;
+    /**
+     * maximum length of a request frame, length field excluded
+     */
+    public static final int MAX_REQUEST = (1 << 16) - 4;
+
+    private Protocol() {
+    }
+
+    /**
+     * start a frame, {@link #end(ByteBuffer, int)} writes its length once the body is written
+     *
+     * @return position of the frame
+     */
+    public static int begin(ByteBuffer buffer, byte type, int requestId) {
+        int start = buffer.position();
+        buffer.putInt(0).put(type).putInt(requestId);
+        return start;
+    }
+
+    public static void end(ByteBuffer buffer, int start) {
+        buffer.putInt(start, buffer.position() - start - 4);
+    }
+
+    public static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        Varints.putLong(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the length is invalid
+     */
+    public static String getString(ByteBuffer buffer) {
+        long length = Varints.getLong(buffer);
+        if (length < 0 || length > buffer.remaining())
+            throw new IllegalArgumentException("invalid string");
+        byte[] bytes = new byte[(int) length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static int maxStringSize(String value) {
+        return Varints.MAX_SIZE + 3 * value.length();
+    }
+
+    public static void create(ByteBuffer buffer, int requestId, List<String> namePlayers) {
+        int start = begin(buffer, CREATE, requestId);
+        Varints.putLong(buffer, namePlayers.size());
+        for (String name : namePlayers)
+            putString(buffer, name);
+        end(buffer, start);
+    }
+
+    public static void submit(ByteBuffer buffer, int requestId, long gameId, String constructionPlan) {
+        int start = begin(buffer, SUBMIT, requestId);
+        Varints.putLong(buffer, gameId);
+        putString(buffer, constructionPlan);
+        end(buffer, start);
+    }
+
+    public static void state(ByteBuffer buffer, int requestId, long gameId) {
+        int start = begin(buffer, STATE, requestId);
+        Varints.putLong(buffer, gameId);
+        end(buffer, start);
+    }
+
+    static List<String> readCreate(ByteBuffer body) {
+        long count = Varints.getLong(body);
+        if (count < 0 || count > body.remaining())
+            throw new IllegalArgumentException("invalid player count");
+        List<String> names = new ArrayList<>((int) count);
+        for (long i = 0; i < count; i++)
+            names.add(getString(body));
+        return names;
+    }
+
+    static int maxTurnSize(TurnDelta delta) {
+        return HEADER_SIZE + (4 + 2 * delta.budgets().size() + 3 * delta.size() + delta.cityCrewMoves().size()) * Varints.MAX_SIZE;
+    }
+
+    static void turn(ByteBuffer buffer, int requestId, TurnDelta delta, GameSnapshot players) {
+        int start = begin(buffer, TURN, requestId);
+        Varints.putLong(buffer, delta.getTurn());
+        Varints.putLong(buffer, players.playerIndex(delta.getPlayer()) + 1);
+        Varints.putLong(buffer, delta.budgets().size());
+        for (Map.Entry<Player, Long> entry : delta.budgets().entrySet()) {
+            Varints.putLong(buffer, players.playerIndex(entry.getKey()));
+            Varints.putLong(buffer, entry.getValue());
+        }
+        Varints.putLong(buffer, delta.size());
+        for (int i = 0; i < delta.size(); i++) {
+            Varints.putLong(buffer, delta.cellIndex(i));
+            Varints.putLong(buffer, (long) (players.playerIndex(delta.getOwner(i)) + 1) << 1 | (delta.getIsCityCenter(i) ? 1 : 0));
+            Varints.putLong(buffer, delta.getDeposit(i));
+        }
+        long cols = players.cols();
+        Varints.putLong(buffer, delta.cityCrewMoves().size());
+        for (Point move : delta.cityCrewMoves())
+            Varints.putLong(buffer, move.getY() * cols + move.getX());
+        end(buffer, start);
+    }
+
+    static int maxStateSize(GameSnapshot snapshot) {
+        return HEADER_SIZE + (6 + snapshot.getPlayers().size() + 2 * (int) (snapshot.rows() * snapshot.cols())) * Varints.MAX_SIZE;
+    }
+
+    static void state(ByteBuffer buffer, int requestId, GameSnapshot snapshot) {
+        new StateEncoder(requestId, snapshot).encode(buffer);
+    }
+
+    /**
+     * encodes the STATE of a game piece by piece into buffers of any size, so that a large board is sent
+     * without ever holding its whole frame. the length of the frame is computed up front.
+     */
+    static final class StateEncoder {
+        private final int requestId;
+        private final GameSnapshot snapshot;
+        private final int length;
+        private final long cells;
+        /**
+         * next cell to write, `-1` before the header
+         */
+        private long cell = -1;
+
+        StateEncoder(int requestId, GameSnapshot snapshot) {
+            this.requestId = requestId;
+            this.snapshot = snapshot;
+            this.cells = snapshot.rows() * snapshot.cols();
+            long length = HEADER_SIZE - 4 + Varints.size(snapshot.rows()) + Varints.size(snapshot.cols())
+                    + Varints.size(snapshot.getTurn()) + Varints.size(snapshot.playerIndex(snapshot.getCurrentPlayer()) + 1)
+                    + Varints.size(snapshot.playerIndex(snapshot.winner()) + 1) + Varints.size(snapshot.getPlayers().size());
+            for (Player player : snapshot.getPlayers())
+                length += Varints.size(snapshot.budget(player));
+            for (long i = 0; i < cells; i++) {
+                Point point = Point.of(i % snapshot.cols(), i / snapshot.cols());
+                length += Varints.size(owner(point)) + Varints.size(snapshot.getDeposit(point));
+            }
+            if (length > Integer.MAX_VALUE - 4)
+                throw new IllegalArgumentException("board too large");
+            this.length = (int) length;
+        }
+
+        /**
+         * @return size of the whole frame
+         */
+        int size() {
+            return length + 4;
+        }
+
+        private long owner(Point point) {
+            return (long) (snapshot.playerIndex(snapshot.getOwner(point)) + 1) << 1 | (snapshot.isCityCenter(point) ? 1 : 0);
+        }
+
+        /**
+         * write as much of the frame as fits
+         *
+         * @return true once the whole frame is written
+         */
+        boolean encode(ByteBuffer buffer) {
+            if (cell < 0) {
+                if (buffer.remaining() < HEADER_SIZE + (6 + snapshot.getPlayers().size()) * Varints.MAX_SIZE)
+                    return false;
+                buffer.putInt(length).put(STATE).putInt(requestId);
+                Varints.putLong(buffer, snapshot.rows());
+                Varints.putLong(buffer, snapshot.cols());
+                Varints.putLong(buffer, snapshot.getTurn());
+                Varints.putLong(buffer, snapshot.playerIndex(snapshot.getCurrentPlayer()) + 1);
+                Varints.putLong(buffer, snapshot.playerIndex(snapshot.winner()) + 1);
+                List<Player> players = snapshot.getPlayers();
+                Varints.putLong(buffer, players.size());
+                for (Player player : players)
+                    Varints.putLong(buffer, snapshot.budget(player));
+                cell = 0;
+            }
+            for (; cell < cells && buffer.remaining() >= 2 * Varints.MAX_SIZE; cell++) {
+                Point point = Point.of(cell % snapshot.cols(), cell / snapshot.cols());
+                Varints.putLong(buffer, owner(point));
+                Varints.putLong(buffer, snapshot.getDeposit(point));
+            }
+            return cell == cells;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package Engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * hashed timing wheel, scheduling and cancelling a timeout cost O(1) whatever the number of pending timeouts.
+ * timeouts expire on the first tick after their deadline, so the tick duration is the precision of the wheel.
+ */
+public class TimingWheel implements AutoCloseable {
+    public final class Timeout {
+        private final Runnable task;
+        private long rounds;
+        private int bucket = -1;
+        private Timeout previous, next;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * @return true if the timeout was pending, false if it already expired or was cancelled
+         */
+        public boolean cancel() {
+            synchronized (TimingWheel.this) {
+                if (bucket < 0)
+                    return false;
+                unlink(this);
+                pending--;
+                return true;
+            }
+        }
+
+        public boolean isPending() {
+            synchronized (TimingWheel.this) {
+                return bucket >= 0;
+            }
+        }
+    }
+
+    private final Timeout[] buckets;
+    private final int mask;
+    private final long tickNanos;
+    private final LongSupplier clock;
+    private final long start;
+    private long tick;
+    private int pending;
+    private Thread ticker;
+    private volatile boolean closed;
+
+    /**
+     * @param wheelSize number of buckets, rounded up to a power of two
+     * @param tickDuration duration of a tick
+     * @param unit unit of the tick duration
+     */
+    public TimingWheel(int wheelSize, long tickDuration, TimeUnit unit) {
+        this(wheelSize, tickDuration, unit, System::nanoTime);
+    }
+
+    /**
+     * @param clock source of time in nanoseconds
+     */
+    public TimingWheel(int wheelSize, long tickDuration, TimeUnit unit, LongSupplier clock) {
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+        this.tickNanos = Math.max(1, unit.toNanos(tickDuration));
+        this.clock = clock;
+        this.start = clock.getAsLong();
+    }
+
+    /**
+     * run a task once the delay elapsed, the task runs on the thread advancing the wheel and must not block
+     *
+     * @return handle to cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (closed)
+            throw new EngineException.EngineClosed();
+        Timeout timeout = new Timeout(task);
+        synchronized (this) {
+            long elapsed = clock.getAsLong() - start + unit.toNanos(delay);
+            long target = Math.max(tick + 1, (elapsed + tickNanos - 1) / tickNanos);
+            timeout.rounds = (target - tick - 1) / buckets.length;
+            link(timeout, (int) (target & mask));
+            pending++;
+        }
+        return timeout;
+    }
+
+    /**
+     * @return number of timeouts waiting to expire
+     */
+    public synchronized int pending() {
+        return pending;
+    }
+
+    private void link(Timeout timeout, int bucket) {
+        timeout.bucket = bucket;
+        timeout.previous = null;
+        timeout.next = buckets[bucket];
+        if (buckets[bucket] != null)
+            buckets[bucket].previous = timeout;
+        buckets[bucket] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null)
+            timeout.previous.next = timeout.next;
+        else
+            buckets[timeout.bucket] = timeout.next;
+        if (timeout.next != null)
+            timeout.next.previous = timeout.previous;
+        timeout.bucket = -1;
+        timeout.previous = null;
+        timeout.next = null;
+    }
+
+    /**
+     * process every tick elapsed until now and run the expired tasks
+     *
+     * @return number of expired tasks
+     */
+    public int advance() {
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = (clock.getAsLong() - start) / tickNanos;
+            while (tick < now) {
+                tick++;
+                Timeout timeout = buckets[(int) (tick & mask)];
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    if (timeout.rounds == 0) {
+                        unlink(timeout);
+                        pending--;
+                        expired.add(timeout);
+                    } else {
+                        timeout.rounds--;
+                    }
+                    timeout = next;
+                }
+            }
+        }
+        for (Timeout timeout : expired) {
+            try {
+                timeout.task.run();
+            } catch (Throwable e) {
+                Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e);
+            }
+        }
+        return expired.size();
+    }
+
+    /**
+     * advance the wheel on a background thread once per tick
+     */
+    public synchronized void start() {
+        if (ticker != null)
+            return;
+        ticker = new Thread(() -> {
+            while (!closed) {
+                advance();
+                try {
+                    TimeUnit.NANOSECONDS.sleep(tickNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "timing-wheel");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (ticker != null)
+            ticker.interrupt();
+    }
+}
@@ -0,0 +1,84 @@
+package Engine;
+
+import Game.Game;
+import Game.GameUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void expireAndCancel() {
+        TimingWheel wheel = new TimingWheel(8, 10, TimeUnit.MILLISECONDS, now::get);
+        List<Integer> expired = new ArrayList<>();
+        wheel.schedule(() -> expired.add(1), 25, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> expired.add(2), 200, TimeUnit.MILLISECONDS); // more than one round
+        TimingWheel.Timeout cancelled = wheel.schedule(() -> expired.add(3), 30, TimeUnit.MILLISECONDS);
+        assertEquals(3, wheel.pending());
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        now.set(TimeUnit.MILLISECONDS.toNanos(29));
+        assertEquals(0, wheel.advance());
+        now.set(TimeUnit.MILLISECONDS.toNanos(30));
+        assertEquals(1, wheel.advance());
+        assertEquals(List.of(1), expired);
+
+        now.set(TimeUnit.MILLISECONDS.toNanos(199));
+        wheel.advance();
+        assertEquals(List.of(1), expired);
+        now.set(TimeUnit.MILLISECONDS.toNanos(200));
+        wheel.advance();
+        assertEquals(List.of(1, 2), expired);
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    public void manyTimeouts() {
+        TimingWheel wheel = new TimingWheel(512, 1, TimeUnit.MILLISECONDS, now::get);
+        AtomicInteger expired = new AtomicInteger();
+        List<TimingWheel.Timeout> timeouts = new ArrayList<>();
+        for (int i = 0; i < 100000; i++)
+            timeouts.add(wheel.schedule(expired::incrementAndGet, i % 5000, TimeUnit.MILLISECONDS));
+        for (int i = 0; i < timeouts.size(); i += 2)
+            timeouts.get(i).cancel();
+        now.set(TimeUnit.SECONDS.toNanos(5));
+        assertEquals(50000, wheel.advance());
+        assertEquals(50000, expired.get());
+    }
+
+    @Test
+    public void planDeadline() throws Exception {
+        TimingWheel wheel = new TimingWheel(64, 1, TimeUnit.SECONDS, now::get);
+        try (GameRegistry registry = new GameRegistry()) {
+            registry.enableDeadlines(new PlanDeadlines(wheel, PlanDeadlines.DefaultAction.REUSE_LAST_PLAN));
+            Game game = GameUtils.createCustomGame("""
+                    init_plan_min=1
+                    plan_rev_sec=10
+                    plan_rev_min=0
+                    """, "a", "b");
+            long id = registry.host(game);
+            registry.submitPlan(id, "x = 1").get();
+            registry.submitPlan(id, "done").get();
+            assertEquals(2, registry.snapshot(id).getTurn());
+
+            now.set(TimeUnit.SECONDS.toNanos(10)); // player a revision deadline expired
+            wheel.advance();
+            registry.ask(id, g -> null).get();
+            assertEquals(game.getPlayer2(), registry.snapshot(id).getCurrentPlayer());
+
+            now.set(TimeUnit.SECONDS.toNanos(20));
+            wheel.advance();
+            registry.ask(id, g -> null).get();
+            assertEquals(3, registry.snapshot(id).getTurn());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package Game;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * actions of a plan in order, recorded instead of being applied so that they can be merged later,
+ * or recorded with their outcome once applied so that they can be logged
+ */
+public class CommandBuffer {
+    static final byte MOVE = 0;
+    static final byte INVEST = 1;
+    static final byte COLLECT = 2;
+    static final byte ATTACK = 3;
+    static final byte RELOCATE = 4;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private byte[] kinds = new byte[16];
+    private byte[] directions = new byte[16];
+    private long[] values = new long[16];
+    private boolean[] outcomes = new boolean[16];
+    private int size;
+
+    void record(byte kind, Direction direction, long value) {
+        if (kind < MOVE || kind > RELOCATE)
+            throw new IllegalArgumentException("unknown command " + kind);
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            directions = Arrays.copyOf(directions, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+            outcomes = Arrays.copyOf(outcomes, size * 2);
+        }
+        kinds[size] = kind;
+        directions[size] = (byte) (direction == null ? -1 : direction.ordinal());
+        values[size] = value;
+        outcomes[size] = false;
+        size++;
+    }
+
+    /**
+     * set the outcome of the latest recorded action
+     */
+    void recordOutcome(boolean outcome) {
+        outcomes[size - 1] = outcome;
+    }
+
+    public void move(Direction direction) {
+        record(MOVE, direction, 0);
+    }
+
+    public void invest(long value) {
+        record(INVEST, null, value);
+    }
+
+    public void collect(long value) {
+        record(COLLECT, null, value);
+    }
+
+    public void attack(Direction direction, long value) {
+        record(ATTACK, direction, value);
+    }
+
+    public void relocate() {
+        record(RELOCATE, null, 0);
+    }
+
+    /**
+     * @return name of the command of the action in the plan language
+     */
+    public String command(int i) {
+        return switch (kinds[i]) {
+            case MOVE -> "move";
+            case INVEST -> "invest";
+            case COLLECT -> "collect";
+            case ATTACK -> "shoot";
+            case RELOCATE -> "relocate";
+            default -> throw new IllegalStateException("unknown command " + kinds[i]);
+        };
+    }
+
+    /**
+     * @return direction of the action, `null` for an action without direction
+     */
+    public Direction direction(int i) {
+        return directions[i] < 0 ? null : DIRECTIONS[directions[i]];
+    }
+
+    public long value(int i) {
+        return values[i];
+    }
+
+    /**
+     * @return result the action had when it was applied
+     */
+    public boolean outcome(int i) {
+        return outcomes[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return maximum number of bytes written by {@link #encode(ByteBuffer)}
+     */
+    int maxEncodedSize() {
+        return Varints.MAX_SIZE + size * (3 + Varints.MAX_SIZE);
+    }
+
+    /**
+     * write the actions with their outcome: count (kind direction+1 signedValue outcome)*
+     */
+    void encode(ByteBuffer buffer) {
+        Varints.putLong(buffer, size);
+        for (int i = 0; i < size; i++) {
+            buffer.put(kinds[i]);
+            buffer.put((byte) (directions[i] + 1));
+            Varints.putSignedLong(buffer, values[i]);
+            buffer.put((byte) (outcomes[i] ? 1 : 0));
+        }
+    }
+
+    /**
+     * replace the actions by the ones read from the buffer, see {@link #encode(ByteBuffer)}
+     */
+    void decode(ByteBuffer buffer) {
+        clear();
+        long count = Varints.getLong(buffer);
+        for (long i = 0; i < count; i++) {
+            byte kind = buffer.get();
+            int direction = buffer.get() - 1;
+            if (direction >= DIRECTIONS.length)
+                throw new IllegalArgumentException("unknown direction " + direction);
+            record(kind, direction < 0 ? null : DIRECTIONS[direction], Varints.getSignedLong(buffer));
+            recordOutcome(buffer.get() != 0);
+        }
+    }
+
+    /**
+     * apply a recorded action to a game as its current player
+     *
+     * @param i index of the action
+     * @return result of the action
+     */
+    public boolean apply(Game game, int i) {
+        Direction direction = direction(i);
+        return switch (kinds[i]) {
+            case MOVE -> game.move(direction);
+            case INVEST -> game.invest(values[i]);
+            case COLLECT -> game.collect(values[i]);
+            case ATTACK -> game.attack(direction, values[i]);
+            case RELOCATE -> game.relocate();
+            default -> throw new IllegalStateException("unknown command " + kinds[i]);
+        };
+    }
+}
@@ -11,5 +11,6 @@ public interface Configuration {
     long revisionPlanSeconds();
     long revisionCost();
     long maxDeposit();
+    long interestRate();
     double interestPercentage(long turn, long deposit);
 }
@@ -0,0 +1,191 @@
+package Game;
+
+import Parser.Plan;
+import Player.Player;
+import Region.Region;
+import Region.RegionProps;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * game seen by one player while deciding a simultaneous turn. regions are read from the start-of-turn
+ * state of the base game and copied into a private overlay on first write, the budget and the identifiers
+ * of the player are private to the view too and its actions are recorded into its turn actions, so any
+ * number of views can run in parallel on the same base game without touching it.
+ */
+final class DecideView extends GameProps {
+    private static final class OverlayTerritory extends AbstractList<Region> implements RandomAccess {
+        private final List<Region> base;
+        private final Region[] overlay;
+
+        private OverlayTerritory(List<Region> base, Region[] overlay) {
+            this.base = base;
+            this.overlay = overlay;
+        }
+
+        @Override
+        public Region get(int index) {
+            Region region = overlay[index];
+            return region != null ? region : base.get(index);
+        }
+
+        @Override
+        public int size() {
+            return base.size();
+        }
+    }
+
+    /**
+     * identifiers of the player at the start of the turn with the assignments of the plan on top
+     */
+    private final class OverlayIdentifiers extends AbstractMap<String, Long> {
+        @Override
+        public Long get(Object key) {
+            Long value = assigned.get(key);
+            return value != null ? value : currentPlayer.identifiers().get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return assigned.containsKey(key) || currentPlayer.identifiers().containsKey(key);
+        }
+
+        @Override
+        public Long put(String key, Long value) {
+            Long previous = get(key);
+            assigned.put(key, value);
+            return previous;
+        }
+
+        @Override
+        public Set<Entry<String, Long>> entrySet() {
+            Map<String, Long> merged = new HashMap<>(currentPlayer.identifiers());
+            merged.putAll(assigned);
+            return Collections.unmodifiableMap(merged).entrySet();
+        }
+    }
+
+    private final GameProps base;
+    private final int playerIndex;
+    private final Region[] overlay;
+    private int[] written;
+    private int writtenSize;
+    private long budget;
+    private final Map<String, Long> assigned;
+    private final Map<String, Long> identifiers;
+
+    DecideView(GameProps base, int playerIndex) {
+        this(base, playerIndex, new Region[base.territory.size()]);
+    }
+
+    private DecideView(GameProps base, int playerIndex, Region[] overlay) {
+        super(base.config, new OverlayTerritory(base.territory, overlay), Arrays.asList(base.players), base.random.split());
+        this.base = base;
+        this.playerIndex = playerIndex;
+        this.overlay = overlay;
+        this.written = new int[16];
+        this.assigned = new HashMap<>();
+        this.identifiers = new OverlayIdentifiers();
+    }
+
+    /**
+     * run the plan of the player against the start-of-turn state, the base game and its players are only read
+     */
+    void decide(Plan plan) {
+        for (int i = 0; i < writtenSize; i++)
+            overlay[written[i]] = null;
+        writtenSize = 0;
+        assigned.clear();
+        discardChanges();
+        turn = base.turn;
+        current = playerIndex;
+        currentPlayer = players[playerIndex];
+        cityCrew = null;
+        executionTimeoutNanos = base.executionTimeoutNanos;
+        budget = currentPlayer.getBudget();
+        beginTurn();
+        executePlan(plan);
+    }
+
+    /**
+     * @return actions decided by the last plan with the outcome they had in the view
+     */
+    CommandBuffer actions() {
+        return turnActions;
+    }
+
+    /**
+     * keep the identifiers assigned by the last plan once its actions were merged into the base game, the
+     * actions already changed the budget of the player
+     */
+    void commit() {
+        base.assignIdentifiers(currentPlayer, assigned);
+    }
+
+    @Override
+    public long budget() {
+        return budget;
+    }
+
+    @Override
+    protected boolean updateBudget(Player player, long amount) {
+        // same rule as the budget of a player, which only the merge changes
+        boolean result = budget + amount >= 0;
+        budget = Math.max(0, budget + amount);
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> identifiers() {
+        return identifiers;
+    }
+
+    private Region own(Region region) {
+        int index = indexOf(region);
+        Region copy = overlay[index];
+        if (copy != null)
+            return copy;
+        copy = new RegionProps(region.getLocation(), config.maxDeposit());
+        copy.updateDeposit(region.getDeposit());
+        if (region.getIsCityCenter())
+            copy.setCityCenter(region.getOwner());
+        else
+            copy.updateOwner(region.getOwner());
+        overlay[index] = copy;
+        if (writtenSize == written.length)
+            written = Arrays.copyOf(written, writtenSize * 2);
+        written[writtenSize++] = index;
+        if (region.equals(cityCrew))
+            cityCrew = copy;
+        return copy;
+    }
+
+    @Override
+    protected void updateDeposit(Region region, long amount) {
+        super.updateDeposit(own(region), amount);
+    }
+
+    @Override
+    protected void updateOwner(Region region, Player owner) {
+        super.updateOwner(own(region), owner);
+    }
+
+    @Override
+    protected void setCityCenter(Region region, Player owner) {
+        super.setCityCenter(own(region), owner);
+    }
+
+    @Override
+    protected void removeCityCenter(Region region) {
+        super.removeCityCenter(own(region));
+    }
+
+}
@@ -0,0 +1,49 @@
+package Game;
+
+import java.util.Arrays;
+
+/**
+ * set of cell indices changed during a turn, kept as a bitset for deduplication
+ * and as a list of indices so that iterating and clearing cost O(changes).
+ */
+final class DirtyRegions {
+    private final long[] bits;
+    private int[] indices;
+    private int size;
+
+    DirtyRegions(int cells) {
+        this.bits = new long[(cells + 63) >> 6];
+        this.indices = new int[16];
+    }
+
+    void mark(int index) {
+        long mask = 1L << index;
+        if ((bits[index >> 6] & mask) != 0)
+            return;
+        bits[index >> 6] |= mask;
+        if (size == indices.length)
+            indices = Arrays.copyOf(indices, size * 2);
+        indices[size++] = index;
+    }
+
+    boolean isDirty(int index) {
+        return (bits[index >> 6] & (1L << index)) != 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param i position in the order cells were first marked
+     */
+    int get(int i) {
+        return indices[i];
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++)
+            bits[indices[i] >> 6] = 0;
+        size = 0;
+    }
+}
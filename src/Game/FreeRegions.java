@@ -0,0 +1,72 @@
+package Game;
+
+import Region.Region;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * indices of the regions without owner kept dense, so that picking one at random costs O(1).
+ * removing an index swaps the last index into its place and positions remember where every index is.
+ */
+public final class FreeRegions {
+    private final int[] cells;
+    private final int[] positions;
+    private int size;
+
+    /**
+     * index the regions of a territory that have no owner yet, the territory is scanned once here
+     */
+    public FreeRegions(List<Region> territory) {
+        this.cells = new int[territory.size()];
+        this.positions = new int[territory.size()];
+        Arrays.fill(positions, -1);
+        for (int i = 0; i < territory.size(); i++)
+            update(i, territory.get(i));
+    }
+
+    /**
+     * keep the index of a region in sync with its owner
+     */
+    void update(int index, Region region) {
+        if (region.getOwner() == null)
+            add(index);
+        else
+            remove(index);
+    }
+
+    void add(int index) {
+        if (positions[index] >= 0)
+            return;
+        positions[index] = size;
+        cells[size++] = index;
+    }
+
+    void remove(int index) {
+        int position = positions[index];
+        if (position < 0)
+            return;
+        int last = cells[--size];
+        cells[position] = last;
+        positions[last] = position;
+        positions[index] = -1;
+    }
+
+    boolean contains(int index) {
+        return positions[index] >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return index of a region without owner picked uniformly
+     * @throws GameException.NoFreeRegion if every region has an owner
+     */
+    int sample(GameRandom random) {
+        if (size == 0)
+            throw new GameException.NoFreeRegion();
+        return cells[random.nextInt(size)];
+    }
+}
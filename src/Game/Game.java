@@ -1,8 +1,10 @@
 package Game;
 
+import Parser.Plan;
 import Region.*;
 import Player.*;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -13,8 +15,21 @@ public interface Game {
 
     Player getPlayer2();
 
+    /**
+     * @return every player of the game in turn order, including eliminated players
+     */
+    List<Player> getPlayers();
+
+    /**
+     * @param player player of the game
+     * @return true when the player ran out of budget or city center and no longer takes turns
+     */
+    boolean isEliminated(Player player);
+
     long getTurn();
 
+    Configuration getConfiguration();
+
     Map<String, Long> identifiers();
 
     Map<String, Long> specialIdentifiers();
@@ -75,6 +90,72 @@ public interface Game {
      */
     void submitPlan(String constructionPlan);
 
+    /**
+     * submit a plan of current player that was already parsed
+     *
+     * @param constructionPlan a parsed plan
+     */
+    void submitPlan(Plan constructionPlan);
+
+    /**
+     * let two players play the same plans every turn until the game ends
+     *
+     * @see #simulate(List, long)
+     */
+    SimulationResult simulate(Plan planA, Plan planB, long maxTurns);
+
+    /**
+     * play turns without publishing them until the game ends or the number of turns is reached.
+     * a plan that fails is rolled back and the player passes, {@link #lastDelta()} then holds every
+     * region changed during the simulation. every turn played is appended to the turn log of the game,
+     * a failed plan as a plan that passes.
+     *
+     * @param plans    plan played by every player in turn order
+     * @param maxTurns maximum number of turns to play
+     * @return outcome of the simulation
+     */
+    SimulationResult simulate(List<Plan> plans, long maxTurns);
+
+    /**
+     * limit the wall-clock time a plan may run, a plan running longer is stopped and rolled back
+     *
+     * @param timeout time allowed to each plan, zero or negative for no limit
+     */
+    void setExecutionTimeout(Duration timeout);
+
+    /**
+     * @return time allowed to each plan, zero for no limit
+     */
+    Duration getExecutionTimeout();
+
+    /**
+     * stop the plan being executed or, if none, the next plan. safe to call from any thread
+     */
+    void cancelExecution();
+
+    /**
+     * open a savepoint, every mutation of the game after this call can be undone by {@link #rollback(int)}.
+     * turns ended while a savepoint is open are not published, their changes are published with the first
+     * turn that ends once every savepoint is closed
+     *
+     * @return savepoint mark
+     */
+    int savepoint();
+
+    /**
+     * keep the mutations made after the savepoint
+     *
+     * @param savepoint mark returned by {@link #savepoint()}
+     */
+    void commit(int savepoint);
+
+    /**
+     * undo the mutations made after the savepoint
+     *
+     * @param savepoint mark returned by {@link #savepoint()}
+     */
+    void rollback(int savepoint);
+
     Region regionAt(Point point);
 
     long budget();
@@ -83,6 +164,27 @@ public interface Game {
 
     Player getCurrentPlayer();
 
+    /**
+     * get the state published at the end of the latest turn, safe to read from any thread
+     *
+     * @return immutable snapshot of the game
+     */
+    GameSnapshot snapshot();
+
+    /**
+     * get the changes made by the latest turn
+     *
+     * @return `null` before the first turn ended else changed regions, budgets and city crew moves
+     */
+    TurnDelta lastDelta();
+
+    /**
+     * get a 64-bit fingerprint of the whole state, equal states always have equal hashes
+     *
+     * @return zobrist hash of the game state
+     */
+    long stateHash();
+
     /**
      * get winner of the game
      * @return `null` if no one win else winner
@@ -0,0 +1,307 @@
+package Game;
+
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * bus of the changes of a game for observers such as spectators, loggers and metrics. the game thread is
+ * the only producer and writes every published turn into a preallocated ring: a {@link #REGION} event for
+ * every region that changed, a {@link #BUDGET} event for every budget that changed and then a {@link #TURN}
+ * event closing the turn. every consumer tracks its own sequence and the producer never waits for them, a
+ * consumer falling more than the capacity behind is dropped and can {@link Consumer#rejoin()} at the latest
+ * event.
+ */
+public final class GameEvents {
+    /**
+     * a region changed: {@link Consumer#subject()} is its cell index in row order, {@link Consumer#owner()}
+     * the index of its owner, {@link Consumer#isCityCenter()} and {@link Consumer#value()} its deposit
+     */
+    public static final byte REGION = 1;
+    /**
+     * a budget changed: {@link Consumer#subject()} is the index of the player, {@link Consumer#value()} its budget
+     */
+    public static final byte BUDGET = 2;
+    /**
+     * a turn ended: {@link Consumer#subject()} is the index of the player who played it, `-1` for a simultaneous
+     * turn, and {@link Consumer#owner()} the index of the winner, `-1` if none
+     */
+    public static final byte TURN = 3;
+
+    /**
+     * how a consumer waits for the next event
+     */
+    public enum WaitStrategy {
+        /**
+         * spin on the sequence, lowest latency for a consumer with a core of its own
+         */
+        BUSY_SPIN,
+        /**
+         * yield between checks
+         */
+        YIELD,
+        /**
+         * park for a growing delay up to a millisecond between checks
+         */
+        SLEEP,
+        /**
+         * park until the producer publishes, the producer then pays for waking the consumer up
+         */
+        BLOCK
+    }
+
+    private final int mask;
+    private final byte[] kinds;
+    private final long[] turns;
+    private final int[] subjects;
+    private final int[] owners;
+    private final boolean[] cityCenters;
+    private final long[] values;
+    private final List<Consumer> consumers;
+    /**
+     * last sequence the producer may be writing, slots older than it by the capacity are overwritten
+     */
+    private volatile long claimed = -1;
+    /**
+     * last sequence readable by the consumers
+     */
+    private volatile long published = -1;
+    private final AtomicInteger blocked = new AtomicInteger();
+
+    /**
+     * @param capacity number of events kept for the consumers, a power of two at least
+     *                 {@link GameProps#maxTurnEvents()} of the game
+     */
+    public GameEvents(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two");
+        this.mask = capacity - 1;
+        this.kinds = new byte[capacity];
+        this.turns = new long[capacity];
+        this.subjects = new int[capacity];
+        this.owners = new int[capacity];
+        this.cityCenters = new boolean[capacity];
+        this.values = new long[capacity];
+        this.consumers = new CopyOnWriteArrayList<>();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return sequence of the last published event, `-1` if none
+     */
+    public long published() {
+        return published;
+    }
+
+    /**
+     * publish the events of a turn, only called by the game thread
+     *
+     * @throws IllegalStateException if the turn has more events than the capacity, it would overwrite itself
+     */
+    void publish(TurnDelta delta, GameProps game) {
+        int count = delta.size() + delta.budgets().size() + 1;
+        if (count > capacity())
+            throw new IllegalStateException("a turn of " + count + " events does not fit in the ring");
+        long sequence = published + 1;
+        claimed = sequence + count - 1;
+        // the slots must not be seen overwritten before the claim
+        VarHandle.storeStoreFence();
+        long turn = delta.getTurn();
+        for (int i = 0; i < delta.size(); i++)
+            write(sequence++, REGION, turn, delta.cellIndex(i), game.playerIndex(delta.getOwner(i)),
+                    delta.getIsCityCenter(i), delta.getDeposit(i));
+        for (var entry : delta.budgets().entrySet())
+            write(sequence++, BUDGET, turn, game.playerIndex(entry.getKey()), -1, false, entry.getValue());
+        write(sequence, TURN, turn, game.playerIndex(delta.getPlayer()), game.playerIndex(game.winner()), false, 0);
+        published = sequence;
+        if (blocked.get() > 0) {
+            for (Consumer consumer : consumers) {
+                Thread waiter = consumer.waiter;
+                if (waiter != null)
+                    LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    private void write(long sequence, byte kind, long turn, int subject, int owner, boolean cityCenter, long value) {
+        int slot = (int) sequence & mask;
+        kinds[slot] = kind;
+        turns[slot] = turn;
+        subjects[slot] = subject;
+        owners[slot] = owner;
+        cityCenters[slot] = cityCenter;
+        values[slot] = value;
+    }
+
+    /**
+     * start consuming from the next published event
+     */
+    public Consumer subscribe(WaitStrategy waitStrategy) {
+        Consumer consumer = new Consumer(waitStrategy, published + 1);
+        consumers.add(consumer);
+        return consumer;
+    }
+
+    /**
+     * a reader of the events, used by a single thread. the event read last stays readable through the
+     * accessors until the next one is read.
+     */
+    public final class Consumer implements AutoCloseable {
+        private final WaitStrategy waitStrategy;
+        private long sequence;
+        private long lost;
+        private boolean dropped;
+        private volatile Thread waiter;
+        private byte kind;
+        private long turn;
+        private int subject;
+        private int owner;
+        private boolean cityCenter;
+        private long value;
+
+        private Consumer(WaitStrategy waitStrategy, long sequence) {
+            this.waitStrategy = waitStrategy;
+            this.sequence = sequence;
+        }
+
+        /**
+         * read the next event if it is published
+         *
+         * @return false if no event is published yet or the consumer was dropped
+         */
+        public boolean poll() {
+            if (dropped || sequence > published)
+                return false;
+            int slot = (int) sequence & mask;
+            byte kind = kinds[slot];
+            long turn = turns[slot];
+            int subject = subjects[slot];
+            int owner = owners[slot];
+            boolean cityCenter = cityCenters[slot];
+            long value = values[slot];
+            // the slot is valid if the producer did not claim it again while it was read
+            VarHandle.loadLoadFence();
+            if (claimed - sequence > mask) {
+                dropped = true;
+                return false;
+            }
+            this.kind = kind;
+            this.turn = turn;
+            this.subject = subject;
+            this.owner = owner;
+            this.cityCenter = cityCenter;
+            this.value = value;
+            sequence++;
+            return true;
+        }
+
+        /**
+         * wait for the next event with the wait strategy of the consumer
+         *
+         * @return false if no event was published in time or the consumer was dropped
+         */
+        public boolean await(long timeout, TimeUnit unit) {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            long sleep = 1_000;
+            while (!poll()) {
+                if (dropped)
+                    return false;
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || Thread.currentThread().isInterrupted())
+                    return false;
+                switch (waitStrategy) {
+                    case BUSY_SPIN -> Thread.onSpinWait();
+                    case YIELD -> Thread.yield();
+                    case SLEEP -> {
+                        LockSupport.parkNanos(Math.min(sleep, remaining));
+                        sleep = Math.min(sleep << 1, 1_000_000);
+                    }
+                    case BLOCK -> block(remaining);
+                }
+            }
+            return true;
+        }
+
+        private void block(long nanos) {
+            waiter = Thread.currentThread();
+            blocked.incrementAndGet();
+            try {
+                // checked again once the producer can see the waiter
+                if (sequence > published)
+                    LockSupport.parkNanos(this, nanos);
+            } finally {
+                waiter = null;
+                blocked.decrementAndGet();
+            }
+        }
+
+        /**
+         * @return true if the producer overwrote events before this consumer read them
+         */
+        public boolean isDropped() {
+            return dropped;
+        }
+
+        /**
+         * continue a dropped consumer from the next published event
+         */
+        public void rejoin() {
+            long next = published + 1;
+            lost += next - sequence;
+            sequence = next;
+            dropped = false;
+        }
+
+        /**
+         * @return number of events skipped by rejoining
+         */
+        public long lost() {
+            return lost;
+        }
+
+        /**
+         * @return number of published events this consumer has not read
+         */
+        public long lag() {
+            return published + 1 - sequence;
+        }
+
+        public byte kind() {
+            return kind;
+        }
+
+        public long turn() {
+            return turn;
+        }
+
+        public int subject() {
+            return subject;
+        }
+
+        public int owner() {
+            return owner;
+        }
+
+        public boolean isCityCenter() {
+            return cityCenter;
+        }
+
+        public long value() {
+            return value;
+        }
+
+        /**
+         * stop consuming
+         */
+        @Override
+        public void close() {
+            consumers.remove(this);
+        }
+    }
+}
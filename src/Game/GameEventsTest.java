@@ -0,0 +1,154 @@
+package Game;
+
+import Region.Point;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class GameEventsTest {
+    private static final String[] PLANS = {
+            "d = random % 6 if (d) then move up else move down invest random % 20 + 1",
+            "n = random % 30 if (random % 2) then move upleft else move downright invest n",
+    };
+
+    private static void play(GameProps game, int plans) {
+        for (int i = 0; i < plans && game.winner() == null; i++)
+            game.submitPlan(PLANS[game.getCurrentPlayer() == game.getPlayer1() ? 0 : 1]);
+    }
+
+    @Test
+    public void mirrorBoard() {
+        GameProps game = (GameProps) GameUtils.createCustomGame("m=10 n=10 interest_pct=5", List.of("a", "b"), 21);
+        GameSnapshot start = game.snapshot();
+        int cols = (int) start.cols();
+        long[] deposits = new long[(int) (start.rows() * cols)];
+        int[] owners = new int[deposits.length];
+        for (int cell = 0; cell < deposits.length; cell++) {
+            Point point = Point.of(cell % cols, cell / cols);
+            deposits[cell] = start.getDeposit(point);
+            owners[cell] = start.playerIndex(start.getOwner(point));
+        }
+        long[] budgets = new long[2];
+        for (int i = 0; i < 2; i++)
+            budgets[i] = start.budget(start.getPlayers().get(i));
+
+        GameEvents events = new GameEvents(1 << 12);
+        game.setEvents(events);
+        try (GameEvents.Consumer consumer = events.subscribe(GameEvents.WaitStrategy.BUSY_SPIN)) {
+            int turns = 0;
+            for (int round = 0; round < 20; round++) {
+                play(game, 2);
+                while (consumer.poll()) {
+                    switch (consumer.kind()) {
+                        case GameEvents.REGION -> {
+                            deposits[consumer.subject()] = consumer.value();
+                            owners[consumer.subject()] = consumer.owner();
+                        }
+                        case GameEvents.BUDGET -> budgets[consumer.subject()] = consumer.value();
+                        case GameEvents.TURN -> turns++;
+                    }
+                }
+            }
+            assertEquals(40, turns);
+            assertEquals(0, consumer.lag());
+            assertFalse(consumer.isDropped());
+        }
+
+        GameSnapshot end = game.snapshot();
+        for (int cell = 0; cell < deposits.length; cell++) {
+            Point point = Point.of(cell % cols, cell / cols);
+            assertEquals(end.getDeposit(point), deposits[cell]);
+            assertEquals(end.playerIndex(end.getOwner(point)), owners[cell]);
+        }
+        for (int i = 0; i < 2; i++)
+            assertEquals(end.budget(end.getPlayers().get(i)), budgets[i]);
+    }
+
+    @Test
+    public void dropSlowConsumer() {
+        GameProps game = (GameProps) GameUtils.createCustomGame("m=5 n=5 interest_pct=5", List.of("a", "b"), 5);
+        GameEvents events = new GameEvents(64);
+        game.setEvents(events);
+        GameEvents.Consumer slow = events.subscribe(GameEvents.WaitStrategy.YIELD);
+        assertFalse(slow.poll());
+        // the game never waits for the consumer
+        play(game, 200);
+        assertFalse(slow.poll());
+        assertTrue(slow.isDropped());
+
+        slow.rejoin();
+        assertFalse(slow.isDropped());
+        assertTrue(slow.lost() > 64);
+        assertEquals(0, slow.lag());
+        play(game, 1);
+        assertTrue(slow.poll());
+    }
+
+    @Test
+    public void blockedConsumerWakesUp() {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            GameProps game = (GameProps) GameUtils.createCustomGame("m=10 n=10 interest_pct=5", List.of("a", "b"), 8);
+            GameEvents events = new GameEvents(1 << 14);
+            game.setEvents(events);
+            try (GameEvents.Consumer consumer = events.subscribe(GameEvents.WaitStrategy.BLOCK)) {
+                CompletableFuture<Integer> turns = CompletableFuture.supplyAsync(() -> {
+                    int count = 0;
+                    while (count < 30 && consumer.await(5, TimeUnit.SECONDS)) {
+                        if (consumer.kind() == GameEvents.TURN)
+                            count++;
+                    }
+                    return count;
+                });
+                for (int i = 0; i < 30; i++) {
+                    play(game, 1);
+                    Thread.sleep(1);
+                }
+                assertEquals(30, turns.join());
+            }
+        });
+    }
+
+    @Test
+    public void rejectSmallRing() {
+        GameProps game = (GameProps) GameUtils.createCustomGame("m=10 n=10", List.of("a", "b"), 3);
+        assertEquals(103, game.maxTurnEvents());
+        assertThrows(IllegalArgumentException.class, () -> game.setEvents(new GameEvents(64)));
+        game.setEvents(new GameEvents(128));
+    }
+
+    @Test
+    public void holdTurnsUnderSavepoint() {
+        GameProps game = (GameProps) GameUtils.createCustomGame("m=10 n=10 interest_pct=5", List.of("a", "b"), 17);
+        GameEvents events = new GameEvents(1 << 8);
+        game.setEvents(events);
+        GameSnapshot start = game.snapshot();
+        int savepoint = game.savepoint();
+        play(game, 4);
+        // the turns may still be retracted, nothing is published yet
+        assertEquals(-1, events.published());
+        assertSame(start, game.snapshot());
+        assertNull(game.lastDelta());
+        game.rollback(savepoint);
+
+        try (GameEvents.Consumer consumer = events.subscribe(GameEvents.WaitStrategy.BUSY_SPIN)) {
+            play(game, 1);
+            int turns = 0;
+            while (consumer.poll()) {
+                if (consumer.kind() == GameEvents.REGION) {
+                    Point point = Point.of(consumer.subject() % 10, consumer.subject() / 10);
+                    assertEquals(game.snapshot().getDeposit(point), consumer.value());
+                } else if (consumer.kind() == GameEvents.TURN) {
+                    turns++;
+                    assertEquals(1, consumer.turn());
+                }
+            }
+            assertEquals(1, turns);
+        }
+        assertEquals(game.computeStateHash(), game.stateHash());
+    }
+}
@@ -30,4 +30,34 @@ public abstract class GameException extends RuntimeException {
         }
 
     }
+
+    public static class NoFreeRegion extends ASTException {
+        public NoFreeRegion() {
+            super("no unoccupied region left");
+        }
+    }
+
+    public static class InvalidSave extends ASTException {
+        public InvalidSave(String reason) {
+            super(String.format("invalid save: %s", reason));
+        }
+    }
+
+    public enum StopReason {
+        Timeout,
+        Cancelled,
+    }
+
+    public static class ExecutionStopped extends ASTException {
+        private final StopReason reason;
+
+        public ExecutionStopped(StopReason reason) {
+            super(String.format("plan execution stopped: %s", reason));
+            this.reason = reason;
+        }
+
+        public StopReason getReason() {
+            return reason;
+        }
+    }
 }
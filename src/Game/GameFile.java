@@ -0,0 +1,367 @@
+package Game;
+
+import Player.Player;
+import Player.PlayerProps;
+import Region.Point;
+import Region.Region;
+import Region.RegionProps;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * versioned binary save of the full state of a game.
+ * <p>
+ * layout of version 1, every number is a varint unless stated otherwise:
+ * <pre>
+ * magic (4 bytes) version
+ * rows cols initialPlanMinutes initialPlanSeconds initialBudget initialDeposit
+ * revisionPlanMinutes revisionPlanSeconds revisionCost maxDeposit interestRate
+ * turn current winnerSlot cityCrewCell+1 randomState (8 bytes)
+ * playerCount then for every player: id name budget eliminated identifierCount (name signedValue)*
+ * then for every cell in row order: ownerSlot &lt;&lt; 1 | cityCenter, deposit
+ * </pre>
+ * strings are a varint length followed by UTF-8 bytes, slots are player index + 1 with 0 for no player.
+ */
+public final class GameFile {
+    static final int MAGIC = 0x55504254; // "UPBT"
+    static final int VERSION = 1;
+
+    private GameFile() {
+    }
+
+    /**
+     * write the game to a file, must run on the thread playing the game between turns
+     */
+    public static void save(GameProps game, Path path) throws IOException {
+        ByteBuffer buffer = encode(game);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+
+    /**
+     * @throws GameException.InvalidSave if the file is not a save of a supported version
+     */
+    public static GameProps load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new GameException.InvalidSave("file too large");
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) ;
+            return decode(buffer.flip());
+        }
+    }
+
+    /**
+     * state of a game taken between turns, immutable so it can be encoded on any thread. the board is the
+     * immutable snapshot of the game, so taking it only copies the state of the players.
+     */
+    public static final class Capture {
+        private final Configuration config;
+        private final long turn;
+        private final int current;
+        private final int winnerSlot;
+        private final long cityCrewCell;
+        private final long randomState;
+        private final long[] ids;
+        private final String[] names;
+        private final long[] budgets;
+        private final boolean[] eliminated;
+        private final List<Map<String, Long>> identifiers;
+        private final GameSnapshot board;
+
+        private Capture(GameProps game) {
+            Player[] players = game.players;
+            this.config = game.config;
+            this.turn = game.turn;
+            this.current = game.current;
+            this.winnerSlot = game.slotOf(game.winner);
+            this.cityCrewCell = game.cityCrew == null ? 0 : game.indexOf(game.cityCrew) + 1;
+            this.randomState = game.random.state();
+            this.ids = new long[players.length];
+            this.names = new String[players.length];
+            this.budgets = new long[players.length];
+            this.eliminated = new boolean[players.length];
+            this.identifiers = new ArrayList<>(players.length);
+            for (int i = 0; i < players.length; i++) {
+                ids[i] = players[i].getID();
+                names[i] = players[i].getName();
+                budgets[i] = players[i].getBudget();
+                eliminated[i] = game.isEliminated(players[i]);
+                identifiers.add(new LinkedHashMap<>(players[i].identifiers()));
+            }
+            this.board = game.currentSnapshot();
+        }
+    }
+
+    /**
+     * take the state of the game to encode, must run on the thread playing the game between turns
+     */
+    public static Capture capture(GameProps game) {
+        return new Capture(game);
+    }
+
+    /**
+     * @return buffer ready to be read holding the save of the game
+     */
+    public static ByteBuffer encode(GameProps game) {
+        return encode(capture(game));
+    }
+
+    /**
+     * @return buffer ready to be read holding the save of the captured game
+     */
+    public static ByteBuffer encode(Capture capture) {
+        Configuration config = capture.config;
+        GameSnapshot board = capture.board;
+        int playerCount = capture.names.length;
+        byte[][] names = new byte[playerCount][];
+        int cells = (int) (board.rows() * board.cols());
+        int size = 4 + 5 + 11 * Varints.MAX_SIZE + 4 * Varints.MAX_SIZE + 8 + 5;
+        for (int i = 0; i < playerCount; i++) {
+            names[i] = capture.names[i].getBytes(StandardCharsets.UTF_8);
+            size += 3 * Varints.MAX_SIZE + 1 + 5 + 5 + names[i].length;
+            for (String identifier : capture.identifiers.get(i).keySet())
+                size += 5 + 3 * identifier.length() + Varints.MAX_SIZE;
+        }
+        size += cells * (5 + Varints.MAX_SIZE);
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        Varints.putLong(buffer, VERSION);
+        Varints.putLong(buffer, config.rows());
+        Varints.putLong(buffer, config.cols());
+        Varints.putLong(buffer, config.initialPlanMinutes());
+        Varints.putLong(buffer, config.initialPlanSeconds());
+        Varints.putLong(buffer, config.initialBudget());
+        Varints.putLong(buffer, config.initialDeposit());
+        Varints.putLong(buffer, config.revisionPlanMinutes());
+        Varints.putLong(buffer, config.revisionPlanSeconds());
+        Varints.putLong(buffer, config.revisionCost());
+        Varints.putLong(buffer, config.maxDeposit());
+        Varints.putLong(buffer, config.interestRate());
+
+        Varints.putLong(buffer, capture.turn);
+        Varints.putLong(buffer, capture.current);
+        Varints.putLong(buffer, capture.winnerSlot);
+        Varints.putLong(buffer, capture.cityCrewCell);
+        buffer.putLong(capture.randomState);
+
+        Varints.putLong(buffer, playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            Varints.putLong(buffer, capture.ids[i]);
+            Varints.putLong(buffer, names[i].length);
+            buffer.put(names[i]);
+            Varints.putLong(buffer, capture.budgets[i]);
+            buffer.put((byte) (capture.eliminated[i] ? 1 : 0));
+            Map<String, Long> identifiers = capture.identifiers.get(i);
+            Varints.putLong(buffer, identifiers.size());
+            for (Map.Entry<String, Long> entry : identifiers.entrySet()) {
+                putString(buffer, entry.getKey());
+                Varints.putSignedLong(buffer, entry.getValue());
+            }
+        }
+
+        for (int i = 0; i < cells; i++) {
+            long slot = board.playerIndex(board.getOwner(i)) + 1;
+            Varints.putLong(buffer, slot << 1 | (board.isCityCenter(i) ? 1 : 0));
+            Varints.putLong(buffer, board.getDeposit(i));
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * fields of a save before its players, validated
+     */
+    private record Header(Configuration config, long turn, long current, long winnerSlot, long cityCrewCell,
+                          long randomState, int playerCount) {
+    }
+
+    private static Header decodeHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < 4 || buffer.getInt() != MAGIC)
+            throw new GameException.InvalidSave("not a game save");
+        long version = Varints.getLong(buffer);
+        if (version != VERSION)
+            throw new GameException.InvalidSave("unsupported version " + version);
+        Map<String, Long> parameters = new HashMap<>();
+        for (String name : new String[]{"m", "n", "init_plan_min", "init_plan_sec", "init_budget", "init_center_dep",
+                "plan_rev_min", "plan_rev_sec", "rev_cost", "max_dep", "interest_pct"})
+            parameters.put(name, Varints.getLong(buffer));
+        Configuration config = GameUtils.createConfiguration(parameters);
+
+        long turn = Varints.getLong(buffer);
+        long current = Varints.getLong(buffer);
+        long winnerSlot = Varints.getLong(buffer);
+        long cityCrewCell = Varints.getLong(buffer) - 1;
+        long randomState = buffer.getLong();
+
+        // every count is checked as read, before it sizes anything, a player takes at least 5 bytes
+        long playerCount = Varints.getLong(buffer);
+        if (playerCount < 2 || playerCount > buffer.remaining() / 5
+                || current < 0 || current >= playerCount || winnerSlot < 0 || winnerSlot > playerCount)
+            throw new GameException.InvalidSave("invalid players");
+        return new Header(config, turn, current, winnerSlot, cityCrewCell, randomState, (int) playerCount);
+    }
+
+    /**
+     * @return number of cells of the board that follows the players
+     */
+    private static int checkBoard(Header header, ByteBuffer buffer) {
+        // a cell takes at least 2 bytes
+        long rows = header.config().rows();
+        long cols = header.config().cols();
+        if (rows < 1 || cols < 1 || rows > buffer.remaining() / 2 || cols > buffer.remaining() / 2
+                || rows * cols > buffer.remaining() / 2)
+            throw new GameException.InvalidSave("invalid board size");
+        if (header.cityCrewCell() < -1 || header.cityCrewCell() >= rows * cols)
+            throw new GameException.InvalidSave("invalid city crew");
+        return (int) (rows * cols);
+    }
+
+    /**
+     * @param buffer buffer positioned at the start of a save
+     * @throws GameException.InvalidSave if the buffer is not a save of a supported version
+     */
+    public static GameProps decode(ByteBuffer buffer) {
+        try {
+            Header header = decodeHeader(buffer);
+            Configuration config = header.config();
+            int playerCount = header.playerCount();
+            List<Player> players = new ArrayList<>(playerCount);
+            boolean[] eliminated = new boolean[playerCount];
+            for (int i = 0; i < playerCount; i++) {
+                long id = Varints.getLong(buffer);
+                String name = getString(buffer);
+                Player player = new PlayerProps(id, name, Varints.getLong(buffer));
+                eliminated[i] = buffer.get() != 0;
+                long identifiers = Varints.getLong(buffer);
+                if (identifiers < 0 || identifiers > buffer.remaining())
+                    throw new GameException.InvalidSave("invalid identifiers");
+                for (long j = 0; j < identifiers; j++)
+                    player.identifiers().put(getString(buffer), Varints.getSignedLong(buffer));
+                players.add(player);
+            }
+
+            List<Region> territory = new ArrayList<>(checkBoard(header, buffer));
+            for (int i = 0; i < config.rows(); i++) {
+                for (int j = 0; j < config.cols(); j++) {
+                    Region region = new RegionProps(Point.of(j, i), config.maxDeposit());
+                    long cell = Varints.getLong(buffer);
+                    long slot = cell >>> 1;
+                    if (slot > playerCount)
+                        throw new GameException.InvalidSave("invalid owner");
+                    Player owner = slot == 0 ? null : players.get((int) slot - 1);
+                    if ((cell & 1) != 0)
+                        region.setCityCenter(owner);
+                    else
+                        region.updateOwner(owner);
+                    region.updateDeposit(Varints.getLong(buffer));
+                    territory.add(region);
+                }
+            }
+
+            // players created from now on must not take the id of a loaded player
+            for (Player player : players)
+                GameUtils.reservePlayerId(player.getID());
+            GameProps game = new GameProps(config, territory, players, new GameRandom(header.randomState()));
+            long winnerSlot = header.winnerSlot();
+            game.restore(header.turn(), (int) header.current(), eliminated,
+                    winnerSlot == 0 ? null : players.get((int) winnerSlot - 1),
+                    header.cityCrewCell() < 0 ? null : territory.get((int) header.cityCrewCell()));
+            return game;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new GameException.InvalidSave("truncated or corrupted");
+        }
+    }
+
+    /**
+     * board and budgets of a save, without the identifiers and names of the players
+     *
+     * @param turn       turn the game is in
+     * @param winnerSlot slot of the winner, `0` if none
+     * @param budgets    budget of every player in turn order
+     * @param deposits   deposit of every cell in row order
+     * @param owners     owner slot &lt;&lt; 1 | city center of every cell in row order
+     */
+    record Board(Configuration config, long turn, int winnerSlot, long[] budgets, long[] deposits, int[] owners) {
+    }
+
+    /**
+     * decode the board of a save straight into arrays, for readers of many saves that never play the game
+     *
+     * @param buffer buffer positioned at the start of a save
+     * @throws GameException.InvalidSave if the buffer is not a save of a supported version
+     */
+    static Board decodeBoard(ByteBuffer buffer) {
+        try {
+            Header header = decodeHeader(buffer);
+            int playerCount = header.playerCount();
+            long[] budgets = new long[playerCount];
+            for (int i = 0; i < playerCount; i++) {
+                Varints.getLong(buffer);
+                skipString(buffer);
+                budgets[i] = Varints.getLong(buffer);
+                buffer.get();
+                long identifiers = Varints.getLong(buffer);
+                if (identifiers < 0 || identifiers > buffer.remaining())
+                    throw new GameException.InvalidSave("invalid identifiers");
+                for (long j = 0; j < identifiers; j++) {
+                    skipString(buffer);
+                    Varints.getLong(buffer);
+                }
+            }
+
+            int cells = checkBoard(header, buffer);
+            long maxDeposit = header.config().maxDeposit();
+            long[] deposits = new long[cells];
+            int[] owners = new int[cells];
+            for (int i = 0; i < cells; i++) {
+                long cell = Varints.getLong(buffer);
+                if (cell >>> 1 > playerCount)
+                    throw new GameException.InvalidSave("invalid owner");
+                owners[i] = (int) cell;
+                // clamped like the deposit of a region
+                deposits[i] = Math.min(maxDeposit, Math.max(0, Varints.getLong(buffer)));
+            }
+            return new Board(header.config(), header.turn(), (int) header.winnerSlot(), budgets, deposits, owners);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new GameException.InvalidSave("truncated or corrupted");
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        Varints.putLong(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        long length = Varints.getLong(buffer);
+        if (length < 0 || length > buffer.remaining())
+            throw new GameException.InvalidSave("invalid string");
+        byte[] bytes = new byte[(int) length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        long length = Varints.getLong(buffer);
+        if (length < 0 || length > buffer.remaining())
+            throw new GameException.InvalidSave("invalid string");
+        buffer.position(buffer.position() + (int) length);
+    }
+}
@@ -0,0 +1,134 @@
+package Game;
+
+import Player.Player;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class GameFileTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void saveAndLoad() throws IOException {
+        GameProps game = (GameProps) GameUtils.createCustomGame("m=8 n=8 interest_pct=5", List.of("a", "b", "c"), 3);
+        game.submitPlan("invest 100 move up invest 50 x = random");
+        game.submitPlan("collect 10 y = 0 - 5");
+        Path path = directory.resolve("game.bin");
+        GameFile.save(game, path);
+
+        GameProps loaded = GameFile.load(path);
+        assertEquals(game.getTurn(), loaded.getTurn());
+        assertEquals(game.getCurrentPlayer().getName(), loaded.getCurrentPlayer().getName());
+        assertEquals(game.getConfiguration().interestRate(), loaded.getConfiguration().interestRate());
+        assertEquals(game.stateHash(), loaded.stateHash());
+        for (int i = 0; i < 3; i++) {
+            Player player = game.getPlayers().get(i);
+            Player copy = loaded.getPlayers().get(i);
+            assertEquals(player.getID(), copy.getID());
+            assertEquals(player.getBudget(), copy.getBudget());
+            assertEquals(player.identifiers(), copy.identifiers());
+        }
+        assertEquals(-5, loaded.getPlayers().get(1).identifiers().get("y"));
+
+        // the loaded game makes the same random choices as the saved one
+        for (int i = 0; i < 5; i++) {
+            game.submitPlan("invest random z = random");
+            loaded.submitPlan("invest random z = random");
+        }
+        assertEquals(game.stateHash(), loaded.stateHash());
+        assertEquals(game.getCurrentPlayer().identifiers(), loaded.getCurrentPlayer().identifiers());
+    }
+
+    @Test
+    public void saveEliminatedPlayers() {
+        GameProps game = (GameProps) GameUtils.createGame(List.of("a", "b", "c"), 11);
+        game.submitPlan("invest budget - 1");
+        assertTrue(game.isEliminated(game.getPlayer1()));
+        GameProps loaded = GameFile.decode(GameFile.encode(game));
+        assertTrue(loaded.isEliminated(loaded.getPlayer1()));
+        assertEquals(loaded.getPlayer2(), loaded.getCurrentPlayer());
+        loaded.submitPlan("done");
+        loaded.submitPlan("done");
+        assertEquals(loaded.getPlayer2(), loaded.getCurrentPlayer());
+        assertEquals(2, loaded.getTurn());
+    }
+
+    @Test
+    public void loadLargeBoard() throws IOException {
+        GameProps game = (GameProps) GameUtils.createCustomGame("m=1000 n=1000", List.of("a", "b"), 5);
+        Path path = directory.resolve("large.bin");
+        GameFile.save(game, path);
+        assertTrue(Files.size(path) < 3_000_000);
+        GameProps loaded = GameFile.load(path);
+        assertEquals(1_000_000, loaded.getTerritory().size());
+        assertEquals(game.stateHash(), loaded.stateHash());
+    }
+
+    @Test
+    public void rejectInvalidSave() {
+        GameProps game = (GameProps) GameUtils.createGame(List.of("a", "b"), 1);
+        ByteBuffer save = GameFile.encode(game);
+        ByteBuffer truncated = ByteBuffer.allocate(save.remaining() / 2).put(save.slice(0, save.remaining() / 2)).flip();
+        assertThrows(GameException.InvalidSave.class, () -> GameFile.decode(truncated));
+        ByteBuffer wrongVersion = GameFile.encode(game);
+        wrongVersion.put(4, (byte) 9);
+        assertThrows(GameException.InvalidSave.class, () -> GameFile.decode(wrongVersion));
+        assertThrows(GameException.InvalidSave.class, () -> GameFile.decode(ByteBuffer.wrap(new byte[]{1, 2})));
+    }
+
+    /**
+     * @return save of a 1x2 board with a city center per player, player ids starting at the given id
+     */
+    private static ByteBuffer craftedSave(long current, long playerCount, long firstId, long ownerCell) {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        buffer.putInt(GameFile.MAGIC);
+        Varints.putLong(buffer, GameFile.VERSION);
+        for (long parameter : new long[]{1, 2, 5, 0, 100, 10, 30, 0, 100, 1000, 5})
+            Varints.putLong(buffer, parameter);
+        Varints.putLong(buffer, 1);
+        Varints.putLong(buffer, current);
+        Varints.putLong(buffer, 0);
+        Varints.putLong(buffer, 0);
+        buffer.putLong(42);
+        Varints.putLong(buffer, playerCount);
+        for (int i = 0; i < 2; i++) {
+            Varints.putLong(buffer, firstId + i);
+            Varints.putLong(buffer, 1);
+            buffer.put((byte) ('a' + i));
+            Varints.putLong(buffer, 100);
+            buffer.put((byte) 0);
+            Varints.putLong(buffer, 0);
+        }
+        Varints.putLong(buffer, ownerCell);
+        Varints.putLong(buffer, 10);
+        Varints.putLong(buffer, 2 << 1 | 1);
+        Varints.putLong(buffer, 10);
+        return buffer.flip();
+    }
+
+    @Test
+    public void rejectOutOfRangeNumbers() {
+        assertEquals(2, GameFile.decode(craftedSave(1, 2, 1, 1 << 1 | 1)).getPlayers().size());
+        assertThrows(GameException.InvalidSave.class, () -> GameFile.decode(craftedSave(-1, 2, 1, 1 << 1 | 1)));
+        // would allocate the players before running out of bytes
+        assertThrows(GameException.InvalidSave.class, () -> GameFile.decode(craftedSave(0, 1L << 40, 1, 1 << 1 | 1)));
+        // slot wrapping to a negative int
+        assertThrows(GameException.InvalidSave.class, () -> GameFile.decode(craftedSave(0, 2, 1, 1L << 32 | 1)));
+    }
+
+    @Test
+    public void loadedPlayerIdsReserved() {
+        GameProps loaded = GameFile.decode(craftedSave(0, 2, 1L << 40, 1 << 1 | 1));
+        assertEquals(1L << 40, loaded.getPlayer1().getID());
+        for (Player player : GameUtils.createGame(List.of("c", "d")).getPlayers())
+            assertTrue(player.getID() > (1L << 40) + 1);
+    }
+}
@@ -0,0 +1,90 @@
+package Game;
+
+import Player.Player;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * keeps finished games of one configuration and number of players, a game taken from the pool is
+ * reset in place for new players so that creating games at a high rate does not allocate a new board every time.
+ * snapshots published before the reset keep the previous players, so every acquire still allocates the new
+ * players, their index and the chunks of the snapshot that the reset changed.
+ */
+public class GamePool {
+    private final Configuration configuration;
+    private final int playerCount;
+    private final ArrayDeque<GameProps> games;
+    /**
+     * games acquired and not released yet, not kept alive by the pool
+     */
+    private final Set<GameProps> acquired;
+    private final int capacity;
+
+    /**
+     * @param configuration configuration of every game of the pool
+     * @param playerCount   number of players of every game
+     * @param capacity      maximum number of idle games kept
+     */
+    public GamePool(Configuration configuration, int playerCount, int capacity) {
+        if (playerCount < 2)
+            throw new GameException.InvalidConfiguration();
+        this.configuration = configuration;
+        this.playerCount = playerCount;
+        this.games = new ArrayDeque<>(capacity);
+        this.acquired = Collections.newSetFromMap(new WeakHashMap<>());
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param namePlayers names of new players in turn order
+     * @return a game at its first turn between new players, reused from the pool if any is idle. a reused game
+     * has no turn log, event bus or execution timeout, see {@link GameProps#reset(List)}
+     */
+    public GameProps acquire(List<String> namePlayers) {
+        if (namePlayers.size() != playerCount)
+            throw new GameException.InvalidConfiguration();
+        GameProps game;
+        synchronized (this) {
+            game = games.pollLast();
+        }
+        if (game == null) {
+            game = GameUtils.createGame(configuration, namePlayers, GameRandom.unseeded());
+        } else {
+            List<Player> players = new ArrayList<>(playerCount);
+            for (String name : namePlayers)
+                players.add(GameUtils.createPlayer(configuration, name));
+            game.reset(players);
+        }
+        synchronized (this) {
+            acquired.add(game);
+        }
+        return game;
+    }
+
+    /**
+     * give back a game that is no longer used, the game must not be touched afterwards
+     *
+     * @param game game acquired from this pool
+     * @throws IllegalArgumentException if the game was not acquired from this pool or is already released
+     */
+    public void release(GameProps game) {
+        synchronized (this) {
+            if (!acquired.remove(game))
+                throw new IllegalArgumentException("game not acquired from the pool or already released");
+            if (games.size() < capacity)
+                games.addLast(game);
+        }
+    }
+
+    /**
+     * @return number of idle games
+     */
+    public synchronized int size() {
+        return games.size();
+    }
+}
@@ -0,0 +1,84 @@
+package Game;
+
+import Player.Player;
+import Region.Region;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class GamePoolTest {
+    @Test
+    public void reuseGame() {
+        Configuration configuration = GameUtils.defaultConfiguration();
+        GamePool pool = new GamePool(configuration, 2, 1);
+        GameProps game = pool.acquire(List.of("a", "b"));
+        GameSnapshot initial = game.snapshot();
+        List<Player> previous = game.getPlayers();
+        game.submitPlan("invest 10 move up invest 20 x = 1");
+        game.submitPlan("collect 50 y = 2");
+        GameEvents events = new GameEvents(64);
+        game.setEvents(events);
+        game.setExecutionTimeout(Duration.ofSeconds(1));
+        pool.release(game);
+        assertEquals(1, pool.size());
+
+        GameProps reused = pool.acquire(List.of("c", "d"));
+        assertSame(game, reused);
+        assertEquals("c", reused.getPlayer1().getName());
+        for (Player player : reused.getPlayers()) {
+            assertFalse(previous.contains(player));
+            assertTrue(previous.stream().allMatch(p -> p.getID() != player.getID()));
+        }
+        // a snapshot published before the reset still shows the previous players
+        assertEquals(previous, initial.getPlayers());
+        assertEquals(0, pool.size());
+        assertEquals(1, reused.getTurn());
+        assertNull(reused.winner());
+        assertNull(reused.lastDelta());
+        assertEquals(reused.getPlayer1(), reused.getCurrentPlayer());
+        assertEquals(reused.computeStateHash(), reused.stateHash());
+        int cityCenters = 0;
+        for (Region region : reused.getTerritory()) {
+            if (region.getIsCityCenter()) {
+                cityCenters++;
+                assertEquals(configuration.initialDeposit(), region.getDeposit());
+            } else {
+                assertNull(region.getOwner());
+                assertEquals(0, region.getDeposit());
+            }
+        }
+        assertEquals(2, cityCenters);
+        for (Player player : reused.getPlayers()) {
+            assertEquals(configuration.initialBudget(), player.getBudget());
+            assertTrue(player.identifiers().isEmpty());
+        }
+        GameSnapshot snapshot = reused.snapshot();
+        assertNotSame(initial, snapshot);
+        for (Region region : reused.getTerritory())
+            assertEquals(region.getOwner(), snapshot.getOwner(region.getLocation()));
+
+        // the bus and the timeout of the previous match are not kept
+        assertEquals(Duration.ZERO, reused.getExecutionTimeout());
+        reused.submitPlan("invest 10");
+        assertEquals(reused.getPlayer2(), reused.getCurrentPlayer());
+        assertEquals(-1, events.published());
+    }
+
+    @Test
+    public void releaseForeignGame() {
+        GamePool pool = new GamePool(GameUtils.defaultConfiguration(), 2, 1);
+        assertThrows(IllegalArgumentException.class, () -> pool.release((GameProps) GameUtils.createGame("a", "b")));
+        assertThrows(GameException.InvalidConfiguration.class, () -> pool.acquire(List.of("a", "b", "c")));
+        GameProps first = pool.acquire(List.of("a", "b"));
+        GameProps second = pool.acquire(List.of("c", "d"));
+        pool.release(first);
+        pool.release(second);
+        assertEquals(1, pool.size()); // idle games beyond the capacity are dropped
+        // a game released twice would be handed out twice
+        assertThrows(IllegalArgumentException.class, () -> pool.release(first));
+        assertEquals(1, pool.size());
+    }
+}
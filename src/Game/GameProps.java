@@ -1,56 +1,311 @@
 package Game;
 
 import AST.Node;
-import Parser.GrammarParser;
-import Parser.Parser;
+import Parser.Plan;
 import Player.Player;
 import Region.Point;
 import Region.*;
-import Tokenizer.IterateTokenizer;
 
+import java.time.Duration;
 import java.util.*;
 
 public class GameProps implements Game {
-    protected final Player player1;
-    protected final Player player2;
+    protected Player[] players;
+    protected Map<Player, Integer> playerIndices;
+    private final int[] nextPlayers;
+    private final int[] previousPlayers;
+    private final boolean[] eliminated;
+    private final int[] cityCenterCounts;
+    private final Region[] latestCityCenters;
+    protected int alive;
     protected final List<Region> territory;
     protected final int actionCost = 1;
+    static final int MAX_LOOP_ITERATIONS = 10000;
+    /**
+     * plan logged for a player whose plan failed during a simulation
+     */
+    private static final Plan PASS = Plan.compile("done");
+    protected int current;
     protected Player currentPlayer;
     protected Region cityCrew;
     protected final Map<Player, Region> cityCenters;
     protected final Configuration config;
+    protected final GameRandom random;
     protected long turn;
     protected Player winner;
+    protected final UndoJournal journal;
+    private final Map<String, Long> journaledIdentifiers;
+    private final DirtyRegions dirtyRegions;
+    private final FreeRegions freeRegions;
+    private final List<Point> cityCrewMoves;
+    private final Map<Player, Long> publishedBudgets;
+    protected volatile GameSnapshot snapshot;
+    protected volatile TurnDelta lastDelta;
+    protected long stateHash;
+    long executionTimeoutNanos;
+    private long executionDeadline = Long.MAX_VALUE;
+    private int executionChecks;
+    private volatile boolean cancelled;
+    /**
+     * iterations made by every while loop of the plan being executed
+     */
+    private final Map<Object, int[]> loopIterations = new IdentityHashMap<>();
+    private TurnLog turnLog;
+    private GameEvents events;
+    /**
+     * actions applied during the turn played last with their outcome
+     */
+    final CommandBuffer turnActions = new CommandBuffer();
 
     public GameProps(Configuration config, List<Region> territory, Player player1, Player player2) {
+        this(config, territory, List.of(player1, player2));
+    }
+
+    /**
+     * @param players players in turn order, at least two
+     */
+    public GameProps(Configuration config, List<Region> territory, List<Player> players) {
+        this(config, territory, players, GameRandom.unseeded());
+    }
+
+    /**
+     * @param players players in turn order, at least two
+     * @param random  source of randomness of the game, the game is reproducible when it is seeded
+     */
+    public GameProps(Configuration config, List<Region> territory, List<Player> players, GameRandom random) {
+        if (players.size() < 2)
+            throw new GameException.InvalidConfiguration();
         this.turn = 1;
+        this.random = random;
         this.config = config;
         this.territory = territory;
-        this.player1 = player1;
-        this.player2 = player2;
-        this.currentPlayer = this.player1;
+        this.players = players.toArray(new Player[0]);
+        this.playerIndices = new IdentityHashMap<>();
+        this.nextPlayers = new int[this.players.length];
+        this.previousPlayers = new int[this.players.length];
+        for (int i = 0; i < this.players.length; i++) {
+            playerIndices.put(this.players[i], i);
+            nextPlayers[i] = (i + 1) % this.players.length;
+            previousPlayers[i] = (i + this.players.length - 1) % this.players.length;
+        }
+        this.eliminated = new boolean[this.players.length];
+        this.cityCenterCounts = new int[this.players.length];
+        this.latestCityCenters = new Region[this.players.length];
+        this.alive = this.players.length;
+        this.current = 0;
+        this.currentPlayer = this.players[0];
         this.cityCenters = new HashMap<>();
+        this.journal = new UndoJournal();
+        this.journaledIdentifiers = new JournaledIdentifiers();
+        this.dirtyRegions = new DirtyRegions(territory.size());
+        this.freeRegions = new FreeRegions(territory);
+        this.cityCrewMoves = new ArrayList<>();
+        this.publishedBudgets = new LinkedHashMap<>();
+        for (Player player : this.players)
+            publishedBudgets.put(player, player.getBudget());
+        getCityCenters();
+        this.snapshot = GameSnapshot.of(this);
+        this.stateHash = computeStateHash();
+    }
+
+    /**
+     * identifiers of the current player that record every assignment into the journal
+     */
+    private class JournaledIdentifiers extends AbstractMap<String, Long> {
+        @Override
+        public Long get(Object key) {
+            return currentPlayer.identifiers().get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return currentPlayer.identifiers().containsKey(key);
+        }
+
+        @Override
+        public Long put(String key, Long value) {
+            journal.recordIdentifier(currentPlayer.identifiers(), key);
+            return currentPlayer.identifiers().put(key, value);
+        }
+
+        @Override
+        public Set<Entry<String, Long>> entrySet() {
+            return Collections.unmodifiableMap(currentPlayer.identifiers()).entrySet();
+        }
+    }
+
+    protected int indexOf(Region region) {
+        Point location = region.getLocation();
+        return (int) (location.getY() * config.cols() + location.getX());
+    }
+
+    /**
+     * @return index of the player in the turn order, `-1` if the player is not in the game
+     */
+    protected int playerIndex(Player player) {
+        if (player == null)
+            return -1;
+        Integer index = playerIndices.get(player);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return slot of the player used for hashing, `0` if no player
+     */
+    protected int slotOf(Player player) {
+        return playerIndex(player) + 1;
+    }
+
+    private long cellHash(Region region) {
+        return Zobrist.cell(indexOf(region), slotOf(region.getOwner()), region.getIsCityCenter(), region.getDeposit());
+    }
+
+    private long cityCrewHash() {
+        return Zobrist.cityCrew(cityCrew == null ? -1 : indexOf(cityCrew));
+    }
+
+    /**
+     * compute the hash of the whole state from scratch, mutations keep {@link #stateHash} equal to it incrementally
+     */
+    protected long computeStateHash() {
+        long hash = Zobrist.turn(turn, slotOf(currentPlayer)) ^ cityCrewHash();
+        for (Player player : players)
+            hash ^= Zobrist.budget(slotOf(player), player.getBudget());
+        for (Region region : territory)
+            hash ^= cellHash(region);
+        return hash;
+    }
+
+    @Override
+    public long stateHash() {
+        return stateHash;
+    }
+
+    private void countCityCenter(Region region, int amount) {
+        if (!region.getIsCityCenter())
+            return;
+        int index = playerIndex(region.getOwner());
+        if (index < 0)
+            return;
+        cityCenterCounts[index] += amount;
+        if (amount > 0)
+            latestCityCenters[index] = region;
+        else if (region.equals(latestCityCenters[index]))
+            latestCityCenters[index] = null;
+    }
+
+    void beforeUpdate(Region region) {
+        dirtyRegions.mark(indexOf(region));
+        stateHash ^= cellHash(region);
+        countCityCenter(region, -1);
+    }
+
+    void afterUpdate(Region region) {
+        stateHash ^= cellHash(region);
+        countCityCenter(region, 1);
+        freeRegions.update(indexOf(region), region);
+    }
+
+    protected void updateDeposit(Region region, long amount) {
+        if (journal.isRecording())
+            journal.recordDeposit(region);
+        beforeUpdate(region);
+        region.updateDeposit(amount);
+        afterUpdate(region);
+    }
+
+    protected void updateOwner(Region region, Player owner) {
+        if (journal.isRecording())
+            journal.recordOwner(region);
+        beforeUpdate(region);
+        region.updateOwner(owner);
+        afterUpdate(region);
+    }
+
+    protected void setCityCenter(Region region, Player owner) {
+        if (journal.isRecording())
+            journal.recordCityCenter(region);
+        beforeUpdate(region);
+        region.setCityCenter(owner);
+        afterUpdate(region);
+    }
+
+    protected void removeCityCenter(Region region) {
+        if (journal.isRecording())
+            journal.recordCityCenter(region);
+        beforeUpdate(region);
+        region.removeCityCenter();
+        afterUpdate(region);
+    }
+
+    protected boolean updateBudget(Player player, long amount) {
+        if (journal.isRecording())
+            journal.recordBudget(player);
+        stateHash ^= Zobrist.budget(slotOf(player), player.getBudget());
+        boolean result = player.updateBudget(amount);
+        stateHash ^= Zobrist.budget(slotOf(player), player.getBudget());
+        return result;
+    }
+
+    protected void updateCityCrew(Region region) {
+        if (Objects.equals(region, cityCrew))
+            return;
+        if (journal.isRecording())
+            journal.recordCityCrew(cityCrew);
+        stateHash ^= cityCrewHash();
+        cityCrew = region;
+        stateHash ^= cityCrewHash();
+        if (region != null)
+            cityCrewMoves.add(region.getLocation());
+    }
+
+    @Override
+    public int savepoint() {
+        int savepoint = journal.savepoint();
+        journal.recordHash(stateHash);
+        // a rolled back plan must not have drawn numbers, or a replay of the game diverges
+        journal.recordRandom(random);
+        return savepoint;
+    }
+
+    @Override
+    public void commit(int savepoint) {
+        journal.commit(savepoint);
+    }
+
+    @Override
+    public void rollback(int savepoint) {
+        journal.rollback(savepoint, this);
     }
 
     private void getCityCenters() {
+        cityCenters.clear();
+        Arrays.fill(cityCenterCounts, 0);
+        Arrays.fill(latestCityCenters, null);
         for (Region region : territory) {
-            if (region.getIsCityCenter())
+            if (region.getIsCityCenter()) {
                 cityCenters.put(region.getOwner(), region);
+                countCityCenter(region, 1);
+            }
         }
     }
 
     @Override
     public boolean collect(long value) {
-        if (currentPlayer.getBudget() < 1 || value < 0)
+        return logAction(CommandBuffer.COLLECT, null, value, collectDeposit(value));
+    }
+
+    private boolean collectDeposit(long value) {
+        if (budget() < 1 || value < 0)
             return false;
-        currentPlayer.updateBudget(-1);
+        updateBudget(currentPlayer, -1);
         Region targetRegion = cityCrew;
         if (value > targetRegion.getDeposit())
             return true;
-        targetRegion.updateDeposit(-value);
-        currentPlayer.updateBudget(value);
+        updateDeposit(targetRegion, -value);
+        updateBudget(currentPlayer, value);
         if (targetRegion.getDeposit() == 0)
-            targetRegion.updateOwner(null);
+            updateOwner(targetRegion, null);
         return true;
     }
 
@@ -68,7 +323,11 @@ public class GameProps implements Game {
 
     @Override
     public boolean invest(long value) {
-        currentPlayer.updateBudget(-1);
+        return logAction(CommandBuffer.INVEST, null, value, investDeposit(value));
+    }
+
+    private boolean investDeposit(long value) {
+        updateBudget(currentPlayer, -1);
         boolean atLeastOneAdjacent = cityCrew.getOwner() == currentPlayer;
         for (Region adjacent : getAdjacentRegions(cityCrew)) {
             if (atLeastOneAdjacent) break;
@@ -76,11 +335,11 @@ public class GameProps implements Game {
         }
         if (!atLeastOneAdjacent) // adjacency requirement
             return true;
-        if (currentPlayer.getBudget() < value) // budget requirement
+        if (budget() < value) // budget requirement
             return true;
-        currentPlayer.updateBudget(-value);
-        cityCrew.updateOwner(currentPlayer);
-        cityCrew.updateDeposit(value);
+        updateBudget(currentPlayer, -value);
+        updateOwner(cityCrew, currentPlayer);
+        updateDeposit(cityCrew, value);
         return true;
     }
 
@@ -142,8 +401,12 @@ public class GameProps implements Game {
 
     @Override
     public boolean relocate() {
+        return logAction(CommandBuffer.RELOCATE, null, 0, relocateCityCenter());
+    }
+
+    private boolean relocateCityCenter() {
         //check if the player has enough budget
-        if (!currentPlayer.updateBudget(-actionCost))
+        if (!updateBudget(currentPlayer, -actionCost))
             return false;
 
         Point currentCityCrewLocation = cityCrew.getLocation();
@@ -152,11 +415,11 @@ public class GameProps implements Game {
         long cost = 5 * distance + 10;
 
         //validate if the player has enough budget
-        if (currentPlayer.getBudget() >= cost && cityCrew.getOwner() == currentPlayer) {
-            currentPlayer.updateBudget(-cost);
+        if (budget() >= cost && cityCrew.getOwner() == currentPlayer) {
+            updateBudget(currentPlayer, -cost);
             //update the city center location of current player
-            cityCrew.setCityCenter(currentPlayer);
-            cityCenters.get(currentPlayer).removeCityCenter();
+            setCityCenter(cityCrew, currentPlayer);
+            removeCityCenter(cityCenters.get(currentPlayer));
         }
         return false;
     }
@@ -167,6 +430,7 @@ public class GameProps implements Game {
         int distance = 0;
         Point newLocation = currentLocation.direction(direction);
         while (newLocation.isValidPoint(config.rows(), config.cols())) {
+            checkExecution();
             Region region = regionAt(newLocation);
             if (region.getOwner() != null && region.getOwner() != currentPlayer)
                 return ((distance + 1L) * 100 + (long) (Math.log10(region.getDeposit() + 1)) + 1);
@@ -184,6 +448,7 @@ public class GameProps implements Game {
         for (int i = 0; i < 6; i++)
             spreads[i] = cityCrew.getLocation();
         do {
+            checkExecution();
             for (int i = 0; i < 6; i++) {
                 if (spreads[i] == null)
                     continue;
@@ -206,36 +471,321 @@ public class GameProps implements Game {
         return 0;
     }
 
-    private void executePlan(String plan) {
-        Parser parser = new GrammarParser(new IterateTokenizer(plan));
-        List<Node.ExecNode> nodes = parser.parse();
-        for (Node.ExecNode node : nodes) {
-            node.execute(this);
+    void executePlan(Plan plan) {
+        List<Node.ExecNode> nodes = plan.nodes();
+        if (executionTimeoutNanos > 0)
+            executionDeadline = System.nanoTime() + executionTimeoutNanos;
+        loopIterations.clear();
+        try {
+            for (Node.ExecNode node : nodes) {
+                checkExecution();
+                node.execute(this);
+            }
+        } finally {
+            executionDeadline = Long.MAX_VALUE;
+            cancelled = false;
+            loopIterations.clear();
         }
     }
 
+    @Override
+    public void setExecutionTimeout(Duration timeout) {
+        executionTimeoutNanos = timeout.isNegative() ? 0 : timeout.toNanos();
+    }
+
+    @Override
+    public Duration getExecutionTimeout() {
+        return Duration.ofNanos(executionTimeoutNanos);
+    }
+
+    @Override
+    public void cancelExecution() {
+        cancelled = true;
+    }
+
+    /**
+     * called by long running parts of a plan to stop the execution when the time is up or it was cancelled
+     *
+     * @throws GameException.ExecutionStopped with the reason of the stop
+     */
+    public void checkExecution() {
+        if (cancelled)
+            throw new GameException.ExecutionStopped(GameException.StopReason.Cancelled);
+        // reading the clock is the expensive part, only do it every few checks
+        if ((++executionChecks & 63) == 0 && System.nanoTime() > executionDeadline)
+            throw new GameException.ExecutionStopped(GameException.StopReason.Timeout);
+    }
+
+    /**
+     * count an iteration of a while loop of the plan being executed, every loop of a plan has its own
+     * budget of iterations for the whole execution of the plan, nested loops included
+     *
+     * @param loop node of the loop
+     * @return false once the loop used its budget, the loop then stops
+     */
+    public boolean nextLoopIteration(Object loop) {
+        return ++loopIterations.computeIfAbsent(loop, l -> new int[1])[0] <= MAX_LOOP_ITERATIONS;
+    }
+
     @Override
     public void submitPlan(String constructionPlan) {
+        if (winner != null)
+            throw new GameException.GameEnded();
+        submitPlan(Plan.compile(constructionPlan));
+    }
+
+    @Override
+    public void submitPlan(Plan constructionPlan) {
         if (winner != null)
             throw new GameException.GameEnded();
         beginTurn();
-        executePlan(constructionPlan);
+        turnActions.clear();
+        int savepoint = savepoint();
+        try {
+            executePlan(constructionPlan);
+        } catch (RuntimeException e) {
+            rollback(savepoint);
+            throw e;
+        }
+        commit(savepoint);
+        if (journal.isRecording())
+            journal.recordTurn(currentPlayer, winner, turn);
+        long playedTurn = turn;
+        int player = current;
         winner = findWinner();
         endTurn();
+        if (turnLog != null)
+            turnLog.append(playedTurn, player, constructionPlan.source(), random.state(), turnActions);
+    }
+
+    /**
+     * play the turn of the current player from actions already decided instead of executing a plan
+     *
+     * @param actions actions of the turn with their recorded outcome
+     * @return false if any action did not have its recorded outcome
+     */
+    boolean replayTurn(CommandBuffer actions) {
+        if (winner != null)
+            throw new GameException.GameEnded();
+        beginTurn();
+        turnActions.clear();
+        boolean matches = true;
+        for (int i = 0; i < actions.size(); i++)
+            matches &= actions.apply(this, i) == actions.outcome(i);
+        if (journal.isRecording())
+            journal.recordTurn(currentPlayer, winner, turn);
+        winner = findWinner();
+        endTurn();
+        return matches;
+    }
+
+    /**
+     * append every plan submitted from now on to a log with the outcome of each of its actions
+     *
+     * @param turnLog log of this game, `null` to stop logging
+     */
+    public void setTurnLog(TurnLog turnLog) {
+        this.turnLog = turnLog;
+    }
+
+    /**
+     * publish the changes of every turn from now on to a bus, set from the game thread
+     *
+     * @param events bus of this game, `null` to stop publishing
+     * @throws IllegalArgumentException if the bus cannot hold the changes of a turn, see {@link #maxTurnEvents()}
+     */
+    public void setEvents(GameEvents events) {
+        if (events != null && events.capacity() < maxTurnEvents())
+            throw new IllegalArgumentException("the capacity of the events must be at least " + maxTurnEvents());
+        this.events = events;
     }
 
+    /**
+     * @return number of events a turn publishes at most: every region, every budget and the end of the turn
+     */
+    public int maxTurnEvents() {
+        return territory.size() + players.length + 1;
+    }
+
+    private boolean logAction(byte kind, Direction direction, long value, boolean outcome) {
+        turnActions.record(kind, direction, value);
+        turnActions.recordOutcome(outcome);
+        return outcome;
+    }
+
+    /**
+     * apply the actions decided by every player during a simultaneous turn. the buffers are merged one action
+     * of every player at a time in turn order, so that the result only depends on the buffers and no player
+     * acts entirely before the others. an action no longer valid on the merged state fails like it would in turn.
+     *
+     * @param commands actions of every player indexed by turn order, `null` for a player without actions
+     */
+    void applyCommands(CommandBuffer[] commands) {
+        if (winner != null)
+            throw new GameException.GameEnded();
+        getCityCenters();
+        Region[] crews = new Region[players.length];
+        for (int i = 0; i < players.length; i++)
+            crews[i] = cityCenters.get(players[i]);
+        turnActions.clear();
+        int savepoint = savepoint();
+        try {
+            for (int step = 0, remaining = 1; remaining > 0; step++) {
+                remaining = 0;
+                for (int i = 0; i < players.length; i++) {
+                    if (eliminated[i] || commands[i] == null || step >= commands[i].size())
+                        continue;
+                    switchPlayer(i, crews[i]);
+                    commands[i].apply(this, step);
+                    crews[i] = cityCrew;
+                    remaining++;
+                }
+            }
+        } catch (RuntimeException e) {
+            rollback(savepoint);
+            throw e;
+        }
+        commit(savepoint);
+        winner = findWinner();
+        endSimultaneousTurn();
+    }
+
+    /**
+     * make another player current with its own city crew, the switch is not a move of the crew
+     */
+    private void switchPlayer(int index, Region crew) {
+        if (index == current && Objects.equals(crew, cityCrew))
+            return;
+        if (journal.isRecording()) {
+            journal.recordTurn(currentPlayer, winner, turn);
+            journal.recordCityCrew(cityCrew);
+        }
+        stateHash ^= Zobrist.turn(turn, slotOf(currentPlayer)) ^ cityCrewHash();
+        current = index;
+        currentPlayer = players[index];
+        cityCrew = crew;
+        stateHash ^= Zobrist.turn(turn, slotOf(currentPlayer)) ^ cityCrewHash();
+    }
+
+    /**
+     * every player played the turn, the first player left starts the next one
+     */
+    private void endSimultaneousTurn() {
+        long playedTurn = turn;
+        if (journal.isRecording())
+            journal.recordTurn(currentPlayer, winner, turn);
+        stateHash ^= Zobrist.turn(turn, slotOf(currentPlayer));
+        interestProcess();
+        turn++;
+        current = 0;
+        while (eliminated[current])
+            current++;
+        currentPlayer = players[current];
+        stateHash ^= Zobrist.turn(turn, slotOf(currentPlayer));
+        publishTurn(playedTurn, null);
+    }
+
+    @Override
+    public SimulationResult simulate(Plan planA, Plan planB, long maxTurns) {
+        return simulate(List.of(planA, planB), maxTurns);
+    }
+
+    @Override
+    public SimulationResult simulate(List<Plan> plans, long maxTurns) {
+        if (plans.size() != players.length)
+            throw new IllegalArgumentException("expected " + players.length + " plans");
+        if (winner != null)
+            throw new GameException.GameEnded();
+        long firstTurn = turn;
+        long playedTurn = turn;
+        long executed = 0;
+        long failed = 0;
+        // one scan up front, the city centers are then kept up to date by the mutations
+        getCityCenters();
+        while (winner == null && turn - firstTurn < maxTurns) {
+            turnActions.clear();
+            Region cityCenter = latestCityCenters[current];
+            if (cityCenter != null)
+                cityCenters.put(currentPlayer, cityCenter);
+            else
+                cityCenters.remove(currentPlayer);
+            updateCityCrew(cityCenter);
+            int savepoint = savepoint();
+            Plan plan = plans.get(current);
+            try {
+                executePlan(plan);
+                commit(savepoint);
+            } catch (RuntimeException e) {
+                rollback(savepoint);
+                turnActions.clear();
+                plan = PASS;
+                failed++;
+            }
+            executed++;
+            if (journal.isRecording())
+                journal.recordTurn(currentPlayer, winner, turn);
+            winner = findWinner();
+            playedTurn = turn;
+            if (turnLog != null)
+                turnLog.append(playedTurn, current, plan.source(), random.state(), turnActions);
+            advanceTurn();
+            cityCrewMoves.clear();
+        }
+        publishTurn(playedTurn, null);
+        return new SimulationResult(winner, turn - firstTurn, executed, failed);
+    }
+
+    /**
+     * eliminate every player without budget or city center
+     *
+     * @return last player in the game, `null` if more than one player left
+     */
     private Player findWinner() {
-        if (player1.getBudget() == 0)
-            return player2;
-        else if (player2.getBudget() == 0)
-            return player1;
-        if (territory.stream().noneMatch(region -> region.getIsCityCenter() && region.getOwner() == player1))
-            return player2;
-        else if (territory.stream().noneMatch(region -> region.getIsCityCenter() && region.getOwner() == player2))
-            return player1;
+        for (int i = 0; i < players.length && alive > 1; i++) {
+            if (!eliminated[i] && (players[i].getBudget() == 0 || cityCenterCounts[i] == 0))
+                eliminate(i);
+        }
+        if (alive > 1)
+            return null;
+        for (int i = 0; i < players.length; i++) {
+            if (!eliminated[i])
+                return players[i];
+        }
         return null;
     }
 
+    /**
+     * remove the player from the turn order, the player keeps its links so that it can be restored
+     */
+    private void eliminate(int index) {
+        if (journal.isRecording())
+            journal.recordElimination(index);
+        nextPlayers[previousPlayers[index]] = nextPlayers[index];
+        previousPlayers[nextPlayers[index]] = previousPlayers[index];
+        eliminated[index] = true;
+        alive--;
+    }
+
+    /**
+     * put back the latest eliminated player into the turn order
+     */
+    void restorePlayer(int index) {
+        nextPlayers[previousPlayers[index]] = index;
+        previousPlayers[nextPlayers[index]] = index;
+        eliminated[index] = false;
+        alive++;
+    }
+
+    @Override
+    public List<Player> getPlayers() {
+        return List.of(players);
+    }
+
+    @Override
+    public boolean isEliminated(Player player) {
+        return eliminated[playerIndex(player)];
+    }
+
     @Override
     public List<Region> getTerritory() {
         return territory;
@@ -243,12 +793,12 @@ public class GameProps implements Game {
 
     @Override
     public Player getPlayer1() {
-        return player1;
+        return players[0];
     }
 
     @Override
     public Player getPlayer2() {
-        return player2;
+        return players[1];
     }
 
     @Override
@@ -266,6 +816,11 @@ public class GameProps implements Game {
         return turn;
     }
 
+    @Override
+    public Configuration getConfiguration() {
+        return config;
+    }
+
     @Override
     public Region regionAt(Point point) {
         long index = point.getY() * config.cols() + point.getX();
@@ -279,29 +834,240 @@ public class GameProps implements Game {
 
     public void beginTurn() {
         getCityCenters();
-        cityCrew = cityCenters.get(currentPlayer);
+        updateCityCrew(cityCenters.get(currentPlayer));
     }
 
     public void endTurn() {
-        if (currentPlayer == player1) {
-            currentPlayer = player2;
-        } else {
-            currentPlayer = player1;
+        Player player = currentPlayer;
+        long playedTurn = turn;
+        advanceTurn();
+        publishTurn(playedTurn, player);
+    }
+
+    /**
+     * give the turn to the next player left, interests are paid once every player played
+     */
+    private void advanceTurn() {
+        if (journal.isRecording())
+            journal.recordTurn(currentPlayer, winner, turn);
+        stateHash ^= Zobrist.turn(turn, slotOf(currentPlayer));
+        int next = nextPlayers[current];
+        if (next <= current) {
             interestProcess();
             turn++;
         }
+        current = next;
+        currentPlayer = players[next];
+        stateHash ^= Zobrist.turn(turn, slotOf(currentPlayer));
+    }
+
+    /**
+     * restore the turn order and position of a saved game, regions and players already hold their saved state
+     *
+     * @param eliminated whether every player in turn order is eliminated
+     */
+    void restore(long turn, int current, boolean[] eliminated, Player winner, Region cityCrew) {
+        if (journal.isRecording())
+            throw new IllegalStateException("savepoint is open");
+        this.turn = turn;
+        this.alive = 0;
+        for (int i = 0; i < players.length; i++) {
+            this.eliminated[i] = eliminated[i];
+            if (!eliminated[i])
+                alive++;
+        }
+        // every player is linked to the players left around it, as if the others were eliminated in turn
+        for (int i = 0; i < players.length; i++) {
+            for (int k = 1; k <= players.length; k++) {
+                int next = (i + k) % players.length;
+                if (!eliminated[next]) {
+                    nextPlayers[i] = next;
+                    break;
+                }
+            }
+            for (int k = 1; k <= players.length; k++) {
+                int previous = (i - k + players.length) % players.length;
+                if (!eliminated[previous]) {
+                    previousPlayers[i] = previous;
+                    break;
+                }
+            }
+        }
+        this.current = current;
+        this.currentPlayer = players[current];
+        this.winner = winner;
+        this.cityCrew = cityCrew;
+        cityCrewMoves.clear();
+        for (Map.Entry<Player, Long> entry : publishedBudgets.entrySet())
+            entry.setValue(entry.getKey().getBudget());
+        getCityCenters();
+        stateHash = computeStateHash();
+        snapshot = GameSnapshot.of(this);
+        dirtyRegions.clear();
+        lastDelta = null;
+    }
+
+    /**
+     * pick a region without owner uniformly in O(1), the index only follows mutations made through the game
+     *
+     * @return a region without owner
+     * @throws GameException.NoFreeRegion if every region has an owner
+     */
+    public Region pickUnoccupiedRegion() {
+        return territory.get(freeRegions.sample(random));
+    }
+
+    /**
+     * @return number of regions without owner
+     */
+    public int unoccupiedRegions() {
+        return freeRegions.size();
+    }
+
+    /**
+     * put the game back to the start of a new match with the same players on the same board.
+     * regions and players are cleared in place, only the chunks of the snapshot that changed are copied.
+     * the turn log, the event bus and the execution timeout belong to the previous match and are cleared.
+     *
+     * @throws IllegalStateException if a savepoint is open
+     */
+    public void reset() {
+        reset(Arrays.asList(players));
+    }
+
+    /**
+     * put the game back to the start of a new match between other players on the same board, see {@link #reset()}.
+     * the budget and identifiers of the players are reset too. a {@link SimultaneousTurn} created before keeps the
+     * previous players and must be created again.
+     *
+     * @param players players in turn order, as many as the game has
+     * @throws IllegalArgumentException if the number of players differs or a player is given twice
+     * @throws IllegalStateException    if a savepoint is open
+     */
+    public void reset(List<Player> players) {
+        if (journal.isRecording())
+            throw new IllegalStateException("savepoint is open");
+        if (players.size() != this.players.length)
+            throw new IllegalArgumentException("the game is played by " + this.players.length + " players");
+        Map<Player, Integer> indices = new IdentityHashMap<>();
+        for (int i = 0; i < players.size(); i++) {
+            if (indices.putIfAbsent(players.get(i), i) != null)
+                throw new IllegalArgumentException("player given twice");
+        }
+        // the hash and the city centers are computed again once the board is cleared, only the changes are tracked
+        for (int i = 0; i < territory.size(); i++) {
+            Region region = territory.get(i);
+            if (region.getOwner() == null && region.getDeposit() == 0 && !region.getIsCityCenter())
+                continue;
+            dirtyRegions.mark(i);
+            region.removeCityCenter();
+            region.updateOwner(null);
+            region.updateDeposit(-region.getDeposit());
+            freeRegions.add(i);
+        }
+        // published snapshots keep the array and the indices of the previous players
+        this.players = players.toArray(new Player[0]);
+        this.playerIndices = indices;
+        publishedBudgets.clear();
+        for (int i = 0; i < this.players.length; i++) {
+            Player player = this.players[i];
+            nextPlayers[i] = (i + 1) % this.players.length;
+            previousPlayers[i] = (i + this.players.length - 1) % this.players.length;
+            player.updateBudget(config.initialBudget() - player.getBudget());
+            player.identifiers().clear();
+            publishedBudgets.put(player, player.getBudget());
+            Region cityCenter = pickUnoccupiedRegion();
+            setCityCenter(cityCenter, player);
+            updateDeposit(cityCenter, config.initialDeposit());
+        }
+        Arrays.fill(eliminated, false);
+        alive = this.players.length;
+        turn = 1;
+        current = 0;
+        currentPlayer = this.players[0];
+        cityCrew = null;
+        winner = null;
+        cancelled = false;
+        turnLog = null;
+        events = null;
+        executionTimeoutNanos = 0;
+        cityCrewMoves.clear();
+        turnActions.clear();
+        getCityCenters();
+        stateHash = computeStateHash();
+        snapshot = GameSnapshot.of(snapshot, this, dirtyRegions);
+        dirtyRegions.clear();
+        lastDelta = null;
+    }
+
+    /**
+     * publish the changes of the turn and an immutable snapshot of the current state,
+     * readers on other threads see them through {@link #lastDelta()} and {@link #snapshot()}.
+     * nothing is published while a savepoint is open
+     *
+     * @param playedTurn turn in which the plan was executed
+     * @param player     player who submitted the plan
+     */
+    protected void publishTurn(long playedTurn, Player player) {
+        // a rollback could still retract the turn, the changes stay tracked until every savepoint is closed
+        if (journal.isRecording())
+            return;
+        Map<Player, Long> budgets = new LinkedHashMap<>();
+        for (Map.Entry<Player, Long> entry : publishedBudgets.entrySet()) {
+            long budget = entry.getKey().getBudget();
+            if (budget != entry.getValue()) {
+                budgets.put(entry.getKey(), budget);
+                entry.setValue(budget);
+            }
+        }
+        lastDelta = new TurnDelta(playedTurn, player, this, dirtyRegions, budgets, cityCrewMoves);
+        if (events != null)
+            events.publish(lastDelta, this);
+        snapshot = GameSnapshot.of(snapshot, this, dirtyRegions);
+        dirtyRegions.clear();
+        cityCrewMoves.clear();
+    }
+
+    /**
+     * forget the changes tracked since the last published turn without publishing them
+     */
+    void discardChanges() {
+        dirtyRegions.clear();
+        cityCrewMoves.clear();
+        turnActions.clear();
+    }
+
+    @Override
+    public TurnDelta lastDelta() {
+        return lastDelta;
+    }
+
+    @Override
+    public GameSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return snapshot of the current state, changes not published yet included, without publishing them
+     */
+    GameSnapshot currentSnapshot() {
+        return dirtyRegions.size() == 0 ? snapshot : GameSnapshot.of(snapshot, this, dirtyRegions);
     }
 
     private void interestProcess() {
         for (Region region : territory) {
-            if (region.getOwner() != null) {
-                long deposit = region.getDeposit();
-                deposit *= config.interestPercentage(turn, deposit) / 100.0;
-                region.updateDeposit(deposit);
-            }
+            if (region.getOwner() != null)
+                updateDeposit(region, interest(config, turn, region.getDeposit()));
         }
     }
 
+    /**
+     * @return interest paid at the end of a turn to an owned region holding the deposit
+     */
+    static long interest(Configuration config, long turn, long deposit) {
+        return (long) (deposit * (config.interestPercentage(turn, deposit) / 100.0));
+    }
+
     @Override
     public Region cityCrewRegion() {
         return cityCrew;
@@ -310,28 +1076,48 @@ public class GameProps implements Game {
     public void moveCityCrew(Point point) {
         if (!point.isValidPoint(config.rows(), config.cols()))
             return;
-        cityCrew = regionAt(point);
+        updateCityCrew(regionAt(point));
     }
 
     @Override
     public boolean move(Direction direction) {
-        if (currentPlayer.getBudget() < actionCost)
+        return logAction(CommandBuffer.MOVE, direction, 0, stepCityCrew(direction));
+    }
+
+    private boolean stepCityCrew(Direction direction) {
+        if (budget() < actionCost)
             return false;
-        currentPlayer.updateBudget(-actionCost);
+        updateBudget(currentPlayer, -actionCost);
         Point newLocation = cityCrew.getLocation().direction(direction);
         if (newLocation.isValidPoint(config.rows(), config.cols())) {
             Region newRegion = regionAt(newLocation);
             if (newRegion.getOwner() == null || newRegion.getOwner() == currentPlayer)
-                cityCrew = newRegion;
+                updateCityCrew(newRegion);
         }
         return true;
     }
 
     @Override
     public Map<String, Long> identifiers() {
+        if (journal.isRecording())
+            return journaledIdentifiers;
         return currentPlayer.identifiers();
     }
 
+    /**
+     * keep the assignments a plan made to the identifiers of a player while it was not the current player
+     *
+     * @param assignments identifiers assigned by the plan with their last value
+     */
+    void assignIdentifiers(Player player, Map<String, Long> assignments) {
+        Map<String, Long> identifiers = player.identifiers();
+        for (Map.Entry<String, Long> entry : assignments.entrySet()) {
+            if (journal.isRecording())
+                journal.recordIdentifier(identifiers, entry.getKey());
+            identifiers.put(entry.getKey(), entry.getValue());
+        }
+    }
+
     @Override
     public Map<String, Long> specialIdentifiers() {
         Map<String, Long> map = new HashMap<>();
@@ -339,19 +1125,23 @@ public class GameProps implements Game {
         map.put("cols", config.cols());
         map.put("currow", cityCrew.getLocation().getX());
         map.put("curcol", cityCrew.getLocation().getY());
-        map.put("budget", currentPlayer.getBudget());
+        map.put("budget", budget());
         map.put("deposit", cityCrew.getDeposit());
         map.put("int", (long) config.interestPercentage(turn, cityCrew.getDeposit()));
         map.put("maxdeposit", config.maxDeposit());
-        map.put("random", new Random().nextLong(1000));
+        map.put("random", random.nextLong(1000));
         return map;
     }
 
     @Override
     public boolean attack(Direction direction, long value) {
+        return logAction(CommandBuffer.ATTACK, direction, value, attackRegion(direction, value));
+    }
+
+    private boolean attackRegion(Direction direction, long value) {
         //validate if the player has enough budget
-        if (value + actionCost > currentPlayer.getBudget() || value < 0) {
-            currentPlayer.updateBudget(-actionCost);
+        if (value + actionCost > budget() || value < 0) {
+            updateBudget(currentPlayer, -actionCost);
             return false;
         }
 
@@ -364,13 +1154,13 @@ public class GameProps implements Game {
             Region targetRegion = regionAt(targetLocation);
             if (value < targetRegion.getDeposit()) {
                 //update the budget of current player
-                currentPlayer.updateBudget(-actionCost - value);
+                updateBudget(currentPlayer, -actionCost - value);
                 //update the deposit of the target region
-                targetRegion.updateDeposit(-value);
+                updateDeposit(targetRegion, -value);
             } else if (value >= targetRegion.getDeposit()) {
-                targetRegion.updateDeposit(-value);
-                targetRegion.updateOwner(null);
-                currentPlayer.updateBudget(-actionCost - value);
+                updateDeposit(targetRegion, -value);
+                updateOwner(targetRegion, null);
+                updateBudget(currentPlayer, -actionCost - value);
             }
         }
         return true;
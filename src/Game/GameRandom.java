@@ -0,0 +1,68 @@
+package Game;
+
+import java.util.SplittableRandom;
+
+/**
+ * <a href="https://prng.di.unimi.it/splitmix64.c">splitmix64</a> generator of a game. its whole state is
+ * one long, so a saved or checkpointed copy of a game makes the same random choices as the game itself.
+ */
+public final class GameRandom {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private long state;
+
+    /**
+     * @param state seed, or state of another generator to continue its sequence
+     */
+    public GameRandom(long state) {
+        this.state = state;
+    }
+
+    /**
+     * @return a generator with a seed that differs on every call
+     */
+    public static GameRandom unseeded() {
+        return new GameRandom(new SplittableRandom().nextLong());
+    }
+
+    public long state() {
+        return state;
+    }
+
+    /**
+     * continue from a state returned by {@link #state()}, used to undo the numbers drawn by a rolled back plan
+     */
+    void restore(long state) {
+        this.state = state;
+    }
+
+    public long nextLong() {
+        return Zobrist.mix(state += GOLDEN_GAMMA);
+    }
+
+    /**
+     * @param bound exclusive upper bound, must be positive
+     * @return value between 0 and the bound picked uniformly
+     */
+    public long nextLong(long bound) {
+        if (bound <= 0)
+            throw new IllegalArgumentException("bound must be positive");
+        long mask = bound - 1;
+        long r = nextLong() >>> 1;
+        if ((bound & mask) == 0)
+            return r & mask;
+        // reject the values of the last incomplete range so that every result is equally likely
+        for (long u = r; u - (r = u % bound) + mask < 0; u = nextLong() >>> 1) ;
+        return r;
+    }
+
+    public int nextInt(int bound) {
+        return (int) nextLong(bound);
+    }
+
+    /**
+     * @return a new generator with a sequence independent of this one
+     */
+    public GameRandom split() {
+        return new GameRandom(nextLong());
+    }
+}
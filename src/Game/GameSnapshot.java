@@ -0,0 +1,190 @@
+package Game;
+
+import Player.Player;
+import Region.Point;
+import Region.Region;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * immutable view of a game published at the end of each turn.
+ * cells are stored in fixed size chunks, a new snapshot only rebuilds the chunks touched during the turn
+ * and shares every other chunk with the previous snapshot, so readers never need a lock.
+ */
+public final class GameSnapshot {
+    static final int CHUNK_SHIFT = 6;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private static final class Chunk {
+        private final long[] deposits;
+        private final Player[] owners;
+        private final long cityCenters;
+
+        private Chunk(List<Region> territory, int from) {
+            int size = Math.min(CHUNK_SIZE, territory.size() - from);
+            long[] deposits = new long[size];
+            Player[] owners = new Player[size];
+            long cityCenters = 0;
+            for (int i = 0; i < size; i++) {
+                Region region = territory.get(from + i);
+                deposits[i] = region.getDeposit();
+                owners[i] = region.getOwner();
+                if (region.getIsCityCenter())
+                    cityCenters |= 1L << i;
+            }
+            this.deposits = deposits;
+            this.owners = owners;
+            this.cityCenters = cityCenters;
+        }
+    }
+
+    private final long rows, cols;
+    private final long turn;
+    private final Player currentPlayer;
+    private final Player winner;
+    private final Player[] players;
+    private final Map<Player, Integer> playerIndices;
+    private final long[] budgets;
+    private final Point cityCrew;
+    private final Chunk[] chunks;
+
+    private GameSnapshot(GameProps game, Chunk[] chunks) {
+        this.rows = game.config.rows();
+        this.cols = game.config.cols();
+        this.turn = game.turn;
+        this.currentPlayer = game.currentPlayer;
+        this.winner = game.winner;
+        this.players = game.players;
+        this.playerIndices = game.playerIndices;
+        this.budgets = new long[players.length];
+        for (int i = 0; i < players.length; i++)
+            budgets[i] = players[i].getBudget();
+        this.cityCrew = game.cityCrew != null ? game.cityCrew.getLocation() : null;
+        this.chunks = chunks;
+    }
+
+    /**
+     * create a snapshot of every cell of the game
+     */
+    static GameSnapshot of(GameProps game) {
+        List<Region> territory = game.territory;
+        Chunk[] chunks = new Chunk[(territory.size() + CHUNK_SIZE - 1) >> CHUNK_SHIFT];
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i] = new Chunk(territory, i << CHUNK_SHIFT);
+        return new GameSnapshot(game, chunks);
+    }
+
+    /**
+     * create a snapshot sharing every chunk with the previous one except the chunks holding dirty regions
+     *
+     * @param dirty regions changed since the previous snapshot
+     */
+    static GameSnapshot of(GameSnapshot previous, GameProps game, DirtyRegions dirty) {
+        Chunk[] chunks = Arrays.copyOf(previous.chunks, previous.chunks.length);
+        for (int i = 0; i < dirty.size(); i++) {
+            int chunk = dirty.get(i) >> CHUNK_SHIFT;
+            if (chunks[chunk] == previous.chunks[chunk])
+                chunks[chunk] = new Chunk(game.territory, chunk << CHUNK_SHIFT);
+        }
+        return new GameSnapshot(game, chunks);
+    }
+
+    private int indexOf(Point point) {
+        return (int) (point.getY() * cols + point.getX());
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public long cols() {
+        return cols;
+    }
+
+    public long getTurn() {
+        return turn;
+    }
+
+    public Player getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    /**
+     * @return players in turn order, eliminated ones included
+     */
+    public List<Player> getPlayers() {
+        return Collections.unmodifiableList(Arrays.asList(players));
+    }
+
+    /**
+     * @return index of the player in turn order, `-1` if the player is not in the game
+     */
+    public int playerIndex(Player player) {
+        return player == null ? -1 : playerIndices.getOrDefault(player, -1);
+    }
+
+    /**
+     * @return `null` if no one win else winner
+     */
+    public Player winner() {
+        return winner;
+    }
+
+    /**
+     * @return budget of the player at the time of the snapshot, `-1` if the player is not in the game
+     */
+    public long budget(Player player) {
+        int index = playerIndices.getOrDefault(player, -1);
+        return index < 0 ? -1 : budgets[index];
+    }
+
+    /**
+     * @return location of the city crew, `null` before the first turn
+     */
+    public Point cityCrewLocation() {
+        return cityCrew;
+    }
+
+    public long getDeposit(Point point) {
+        return getDeposit(indexOf(point));
+    }
+
+    public Player getOwner(Point point) {
+        return getOwner(indexOf(point));
+    }
+
+    public boolean isCityCenter(Point point) {
+        return isCityCenter(indexOf(point));
+    }
+
+    /**
+     * @param index index of the cell in row order
+     */
+    long getDeposit(int index) {
+        return chunks[index >> CHUNK_SHIFT].deposits[index & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * @param index index of the cell in row order
+     */
+    Player getOwner(int index) {
+        return chunks[index >> CHUNK_SHIFT].owners[index & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * @param index index of the cell in row order
+     */
+    boolean isCityCenter(int index) {
+        return (chunks[index >> CHUNK_SHIFT].cityCenters & (1L << (index & (CHUNK_SIZE - 1)))) != 0;
+    }
+
+    /**
+     * @return true when the cell at the index is stored in the same chunk object in both snapshots
+     */
+    boolean sharesCell(GameSnapshot other, int index) {
+        return chunks[index >> CHUNK_SHIFT] == other.chunks[index >> CHUNK_SHIFT];
+    }
+}
@@ -1,6 +1,8 @@
 package Game;
 
+import AST.ASTException;
 import Game.GameException.NotImplemented;
+import Parser.Plan;
 import Player.Player;
 import Region.EuclidianPoint;
 import Region.Point;
@@ -9,10 +11,12 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -437,4 +441,305 @@ public final class GameTest {
         assertThrows(GameException.GameEnded.class, () -> game.submitPlan("done"));
         assertEquals(player1, game.winner());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void rollbackFailedPlan() {
+        player1.budget = 100;
+        Region crewRegion = game.cityCrewRegion();
+        assertThrows(ASTException.UndefinedIdentifier.class,
+                () -> game.submitPlan("x = 1 invest 10 move up y = undefined"));
+        assertEquals(100, player1.budget);
+        assertEquals(0, crewRegion.getDeposit());
+        assertFalse(player1.identifiers().containsKey("x"));
+        assertEquals(crewRegion, game.cityCrewRegion());
+        assertEquals(player1, game.getCurrentPlayer());
+        assertEquals(1, game.getTurn());
+
+        assertThrows(ArithmeticException.class, () -> game.submitPlan("shoot down 10 x = 1 / 0"));
+        assertEquals(100, player1.budget);
+        assertFalse(player1.identifiers().containsKey("x"));
+    }
+
+    @Test
+    public void savepoint() {
+        player1.budget = 100;
+        player2.budget = 100;
+        Region crewRegion = game.cityCrewRegion();
+        int outer = game.savepoint();
+        game.invest(10);
+        int inner = game.savepoint();
+        game.move(Direction.Up);
+        game.identifiers().put("x", 1L);
+        game.rollback(inner);
+        assertEquals(crewRegion, game.cityCrewRegion());
+        assertEquals(89, player1.budget);
+        assertEquals(10, crewRegion.getDeposit());
+        assertFalse(player1.identifiers().containsKey("x"));
+
+        game.submitPlan("collect 5");
+        assertEquals(player2, game.getCurrentPlayer());
+        game.rollback(outer);
+        assertEquals(player1, game.getCurrentPlayer());
+        assertEquals(100, player1.budget);
+        assertEquals(0, crewRegion.getDeposit());
+
+        int savepoint = game.savepoint();
+        game.invest(10);
+        game.commit(savepoint);
+        assertEquals(10, crewRegion.getDeposit());
+        assertThrows(IllegalStateException.class, () -> game.rollback(savepoint));
+    }
+
+    @Test
+    public void snapshot() {
+        player1.budget = 100;
+        GameSnapshot before = game.snapshot();
+        Point center = game.cityCrewRegion().getLocation();
+        game.invest(10);
+        assertSame(before, game.snapshot());
+        assertEquals(0, before.getDeposit(center));
+
+        game.endTurn();
+        GameSnapshot after = game.snapshot();
+        assertEquals(10, after.getDeposit(center));
+        assertEquals(89, after.budget(player1));
+        assertEquals(player1, after.getOwner(center));
+        assertTrue(after.isCityCenter(center));
+        assertEquals(player2, after.getCurrentPlayer());
+        assertEquals(1, before.budget(player1)); // budget when the game was created
+        assertEquals(player1, before.getCurrentPlayer());
+        assertFalse(after.sharesCell(before, game.indexOf(game.cityCrewRegion())));
+        game.beginTurn();
+    }
+
+    @Test
+    public void stateHash() {
+        player1.budget = 1000;
+        player2.budget = 1000;
+        game = new GameProps(mockConfiguration(), new ArrayList<>(territory), player1, player2);
+        game.beginTurn();
+        long initial = game.stateHash();
+        assertEquals(game.computeStateHash(), initial);
+
+        int savepoint = game.savepoint();
+        game.submitPlan("invest 100 move up invest 10 shoot downright 50");
+        assertNotEquals(initial, game.stateHash());
+        assertEquals(game.computeStateHash(), game.stateHash());
+        game.submitPlan("move downleft collect 1");
+        assertEquals(game.computeStateHash(), game.stateHash());
+        game.rollback(savepoint);
+        assertEquals(initial, game.stateHash());
+        assertEquals(game.computeStateHash(), game.stateHash());
+        game.beginTurn();
+    }
+
+    @Test
+    public void turnDelta() {
+        player1.budget = 100;
+        assertNull(game.lastDelta());
+        game.submitPlan("invest 10 move up invest 5");
+        TurnDelta delta = game.lastDelta();
+        assertEquals(player1, delta.getPlayer());
+        assertEquals(1, delta.getTurn());
+        assertEquals(2, delta.size());
+        assertEquals(Point.of(0, 1), delta.getLocation(0));
+        assertEquals(10, delta.getDeposit(0));
+        assertTrue(delta.getIsCityCenter(0));
+        assertEquals(Point.of(0, 0), delta.getLocation(1));
+        assertEquals(5, delta.getDeposit(1));
+        assertEquals(player1, delta.getOwner(1));
+        assertEquals(Map.of(player1, 82L), delta.budgets());
+        assertEquals(List.of(Point.of(0, 1), Point.of(0, 0)), delta.cityCrewMoves());
+
+        game.submitPlan("done");
+        delta = game.lastDelta();
+        assertEquals(player2, delta.getPlayer());
+        assertTrue(delta.budgets().isEmpty());
+        for (int i = 0; i < delta.size(); i++) // only interest changes
+            assertNotNull(delta.getOwner(i));
+        game.beginTurn();
+    }
+
+    @Test
+    public void eliminatePlayers() {
+        TestPlayer player3 = mockPlayer(territory.get(13));
+        player1.budget = 100;
+        player2.budget = 100;
+        player3.budget = 100;
+        game = new GameProps(mockConfiguration(), new ArrayList<>(territory), List.of(player1, player2, player3));
+        game.submitPlan("done");
+        game.submitPlan("collect 1000");
+        assertEquals(player3, game.getCurrentPlayer());
+        int savepoint = game.savepoint();
+
+        territory.get(7).owner = null; // player 2 lost the city center
+        game.submitPlan("done");
+        assertTrue(game.isEliminated(player2));
+        assertNull(game.winner());
+        assertEquals(player1, game.getCurrentPlayer());
+        assertEquals(2, game.getTurn());
+        game.submitPlan("done");
+        assertEquals(player3, game.getCurrentPlayer()); // player 2 is skipped
+
+        player3.budget = 0;
+        game.submitPlan("done");
+        assertTrue(game.isEliminated(player3));
+        assertEquals(player1, game.winner());
+
+        territory.get(7).owner = player2;
+        game.rollback(savepoint);
+        assertNull(game.winner());
+        assertFalse(game.isEliminated(player2));
+        assertFalse(game.isEliminated(player3));
+        assertEquals(player3, game.getCurrentPlayer());
+        assertEquals(1, game.getTurn());
+        game.beginTurn();
+    }
+
+    @Test
+    public void executionTimeout() {
+        player1.budget = 100;
+        String slowPlan = "invest 10 " + "x = 0 while (10000 - x) x = x + 1 ".repeat(1000);
+        game.setExecutionTimeout(Duration.ofMillis(10));
+        GameException.ExecutionStopped e = assertThrows(GameException.ExecutionStopped.class,
+                () -> game.submitPlan(slowPlan));
+        assertEquals(GameException.StopReason.Timeout, e.getReason());
+        assertEquals(100, player1.budget);
+        assertEquals(player1, game.getCurrentPlayer());
+
+        game.setExecutionTimeout(Duration.ZERO);
+        game.submitPlan("invest 10 x = 0 while (100 - x) x = x + 1");
+        assertEquals(player2, game.getCurrentPlayer());
+        game.beginTurn();
+    }
+
+    @Test
+    public void cancelExecution() throws InterruptedException {
+        player1.budget = 100;
+        String slowPlan = "x = 0 while (10000 - x) x = x + 1 ".repeat(100000);
+        Thread canceller = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {
+            }
+            game.cancelExecution();
+        });
+        canceller.start();
+        GameException.ExecutionStopped e = assertThrows(GameException.ExecutionStopped.class,
+                () -> game.submitPlan(slowPlan));
+        canceller.join();
+        assertEquals(GameException.StopReason.Cancelled, e.getReason());
+        assertFalse(player1.identifiers().containsKey("x"));
+    }
+
+    @Test
+    public void simultaneousTurn() {
+        player1.budget = 100;
+        player2.budget = 100;
+        game = new GameProps(mockConfiguration(), new ArrayList<>(territory), player1, player2);
+        SimultaneousTurn simultaneous = new SimultaneousTurn(game, ForkJoinPool.commonPool());
+        simultaneous.submitPlans(List.of(
+                Plan.compile("invest 10 x = budget"),
+                Plan.compile("y = budget invest 20")
+        ));
+        assertEquals(89, player1.budget);
+        assertEquals(79, player2.budget);
+        assertEquals(89, player1.identifiers().get("x"));
+        assertEquals(100, player2.identifiers().get("y")); // plans see the start of the turn
+        assertTrue(territory.get(4).deposit >= 10);
+        assertTrue(territory.get(7).deposit >= 20);
+        assertEquals(2, game.getTurn());
+        assertEquals(player1, game.getCurrentPlayer());
+        assertNull(game.lastDelta().getPlayer());
+        assertEquals(Map.of(player1, 89L, player2, 79L), game.lastDelta().budgets());
+        assertEquals(game.computeStateHash(), game.stateHash());
+
+        long hash = game.stateHash();
+        assertThrows(ASTException.UndefinedIdentifier.class, () -> simultaneous.submitPlans(List.of(
+                Plan.compile("invest 10 z = 1"),
+                Plan.compile("invest 10 y = w")
+        )));
+        assertEquals(89, player1.budget);
+        assertEquals(79, player2.budget);
+        assertFalse(player1.identifiers().containsKey("z"));
+        assertEquals(2, game.getTurn());
+        assertEquals(hash, game.stateHash());
+        game.beginTurn();
+    }
+
+    @Test
+    public void simultaneousTurnKeepsPlayersUntilMerge() {
+        player1.budget = 100;
+        player2.budget = 100;
+        game = new GameProps(mockConfiguration(), new ArrayList<>(territory), player1, player2);
+        List<Long> budgets = new ArrayList<>();
+        List<Boolean> assigned = new ArrayList<>();
+        // every plan is decided when the task returns, before the merge
+        SimultaneousTurn simultaneous = new SimultaneousTurn(game, task -> {
+            task.run();
+            budgets.add(player1.budget);
+            assigned.add(player1.identifiers().containsKey("x"));
+        });
+        simultaneous.submitPlans(List.of(
+                Plan.compile("invest 10 x = budget"),
+                Plan.compile("invest 20")
+        ));
+        assertEquals(List.of(100L, 100L), budgets);
+        assertEquals(List.of(false, false), assigned);
+        assertEquals(89, player1.budget);
+        assertEquals(89, player1.identifiers().get("x"));
+        game.beginTurn();
+    }
+
+    @Test
+    public void simultaneousTurnMergesInTurnOrder() {
+        player1.budget = 100;
+        player2.budget = 100;
+        territory.get(2).owner = player2;
+        game = new GameProps(mockConfiguration(), new ArrayList<>(territory), player1, player2);
+        // both players take the free region at (1, 1), actions are merged one step of every player at a time
+        SimultaneousTurn simultaneous = new SimultaneousTurn(game, Runnable::run);
+        simultaneous.submitPlans(List.of(
+                Plan.compile("move upright invest 10"),
+                Plan.compile("move upleft move downleft invest 20")
+        ));
+        assertEquals(player1, territory.get(5).owner);
+        assertEquals(88, player1.budget);
+        assertEquals(77, player2.budget); // the second move failed so player 2 invested where it stood
+        assertTrue(territory.get(2).deposit >= 20);
+        assertEquals(game.computeStateHash(), game.stateHash());
+        game.beginTurn();
+    }
+
+    @Test
+    public void nestedLoopsShareBudget() {
+        // every loop stops after its iterations for the plan, an inner loop does not start over with each outer one
+        game.submitPlan("t = 0 i = 0 while (10 - i) { i = i + 1 j = 0 while (100000 - j) { j = j + 1 k = 0 "
+                + "while (100000 - k) { k = k + 1 t = t + 1 } } }");
+        assertEquals(10, player1.identifiers().get("i"));
+        assertEquals(GameProps.MAX_LOOP_ITERATIONS, player1.identifiers().get("t"));
+        game.beginTurn();
+    }
+
+    @Test
+    public void simulate() {
+        player1.budget = 100;
+        player2.budget = 100;
+        game = new GameProps(mockConfiguration(), new ArrayList<>(territory), player1, player2);
+        Plan count = Plan.compile("x = 0 while (6000 - x) x = x + 1");
+        SimulationResult result = game.simulate(count, Plan.compile("y = z"), 3);
+        assertEquals(new SimulationResult(null, 3, 6, 3), result);
+        assertEquals(6000, player1.identifiers().get("x")); // the loop runs fully every time the plan is reused
+        assertFalse(player2.identifiers().containsKey("y"));
+        assertEquals(4, game.getTurn());
+        assertEquals(player1, game.getCurrentPlayer());
+        assertNull(game.lastDelta().getPlayer());
+
+        result = game.simulate(count, Plan.compile("invest budget - 1"), 10);
+        assertEquals(new SimulationResult(player1, 1, 2, 0), result);
+        assertTrue(game.isEliminated(player2));
+        assertEquals(game.computeStateHash(), game.stateHash());
+        assertThrows(GameException.GameEnded.class, () -> game.simulate(count, count, 1));
+        game.beginTurn();
+    }
+}
@@ -9,6 +9,7 @@ import AST.Node.*;
 import Game.GameException.*;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class GameUtils {
 
@@ -38,7 +39,15 @@ public final class GameUtils {
     public static Configuration loadConfig(String config) {
         Parser parser = new ConfigParser(new IterateTokenizer(config));
         List<ExecNode> nodes = parser.parse();
-        Map<String, Long> map = evaluate(nodes);
+        return createConfiguration(evaluate(nodes));
+    }
+
+    /**
+     * create a configuration from its parameters, missing parameters take their default value
+     *
+     * @param map value of every parameter by name as in a configuration file
+     */
+    static Configuration createConfiguration(Map<String, Long> map) {
         Configuration configuration = new Configuration() {
             @Override
             public long rows() {
@@ -90,9 +99,14 @@ public final class GameUtils {
                 return map.getOrDefault("max_dep", 1000000L);
             }
 
+            @Override
+            public long interestRate() {
+                return map.getOrDefault("interest_pct", 0L);
+            }
+
             @Override
             public double interestPercentage(long turn, long deposit) {
-                return map.getOrDefault("interest_pct", 0L) * Math.log10(deposit) * Math.log(turn);
+                return interestRate() * Math.log10(deposit) * Math.log(turn);
             }
         };
         if (configuration.initialPlanSeconds() >= 60) throw new InvalidConfiguration();
@@ -115,31 +129,61 @@ public final class GameUtils {
         return territory;
     }
 
-    private static Region pickUnoccupiedRegion(List<Region> territory) {
-        Region region;
-        Random random = new Random();
-        do {
-            int regionIndex = random.nextInt(territory.size());
-            region = territory.get(regionIndex);
-        } while (region.getOwner() != null);
-        return region;
+    /**
+     * @throws NoFreeRegion if every region has an owner
+     */
+    private static Region pickUnoccupiedRegion(List<Region> territory, FreeRegions free, GameRandom random) {
+        int index = free.sample(random);
+        free.remove(index);
+        return territory.get(index);
     }
 
-    private static int id = 1;
+    private static final AtomicLong id = new AtomicLong(1);
+
+    /**
+     * keep the ids of the players created from now on above the id of a player loaded from a save
+     */
+    static void reservePlayerId(long playerId) {
+        if (playerId < Long.MAX_VALUE)
+            id.accumulateAndGet(playerId + 1, Math::max);
+    }
 
     /**
      * create new a player
      *
-     * @return null if no territory else a new player
+     * @param free regions of the territory still without owner, the region picked is removed from it
+     * @return a new player
+     * @throws NoFreeRegion if every region has an owner
      */
-    public static Player createPlayer(Configuration configuration, List<Region> territory, String name) {
-        Region region = pickUnoccupiedRegion(territory);
-        Player player = new PlayerProps(id++, name, configuration.initialBudget());
+    public static Player createPlayer(Configuration configuration, List<Region> territory, String name,
+                                      FreeRegions free) {
+        return createPlayer(configuration, territory, name, free, GameRandom.unseeded());
+    }
+
+    /**
+     * create new a player with its city center picked from a given source of randomness
+     *
+     * @param free regions of the territory still without owner, the region picked is removed from it
+     * @param random source of randomness of the game
+     * @return a new player
+     * @throws NoFreeRegion if every region has an owner
+     */
+    public static Player createPlayer(Configuration configuration, List<Region> territory, String name,
+                                      FreeRegions free, GameRandom random) {
+        Region region = pickUnoccupiedRegion(territory, free, random);
+        Player player = createPlayer(configuration, name);
         region.setCityCenter(player);
         region.updateDeposit(configuration.initialDeposit());
         return player;
     }
 
+    /**
+     * create a new player without a city center
+     */
+    static Player createPlayer(Configuration configuration, String name) {
+        return new PlayerProps(id.getAndIncrement(), name, configuration.initialBudget());
+    }
+
     public static Configuration defaultConfiguration() {
         return loadConfig("""
                 m=4
@@ -164,11 +208,28 @@ public final class GameUtils {
      * @return instance of the game
      */
     public static Game createGame(String namePlayer1, String namePlayer2) {
-        Configuration configuration = defaultConfiguration();
-        List<Region> territory = createTerritory(configuration);
-        Player player1 = createPlayer(configuration, territory, namePlayer1);
-        Player player2 = createPlayer(configuration, territory, namePlayer2);
-        return new GameProps(configuration, territory, player1, player2);
+        return createGame(List.of(namePlayer1, namePlayer2));
+    }
+
+    /**
+     * create new game instance with any number of players
+     *
+     * @param namePlayers names of players in turn order
+     * @return instance of the game
+     */
+    public static Game createGame(List<String> namePlayers) {
+        return createGame(defaultConfiguration(), namePlayers, GameRandom.unseeded());
+    }
+
+    /**
+     * create new game instance that is reproducible, the same seed and plans always give the same game
+     *
+     * @param namePlayers names of players in turn order
+     * @param seed        seed of the randomness of the game
+     * @return instance of the game
+     */
+    public static Game createGame(List<String> namePlayers, long seed) {
+        return createGame(defaultConfiguration(), namePlayers, new GameRandom(seed));
     }
 
     /**
@@ -180,10 +241,61 @@ public final class GameUtils {
      * @return instance of the game
      */
     public static Game createCustomGame(String strConfiguration, String namePlayer1, String namePlayer2) {
+        return createCustomGame(strConfiguration, List.of(namePlayer1, namePlayer2));
+    }
+
+    /**
+     * create new game with specific configuration and any number of players
+     *
+     * @param strConfiguration configuration of the game
+     * @param namePlayers names of players in turn order
+     * @return instance of the game
+     */
+    public static Game createCustomGame(String strConfiguration, List<String> namePlayers) {
+        return createGame(loadConfig(strConfiguration), namePlayers, GameRandom.unseeded());
+    }
+
+    /**
+     * create new game with specific configuration that is reproducible
+     *
+     * @param strConfiguration configuration of the game
+     * @param namePlayers names of players in turn order
+     * @param seed seed of the randomness of the game
+     * @return instance of the game
+     */
+    public static Game createCustomGame(String strConfiguration, List<String> namePlayers, long seed) {
+        return createGame(loadConfig(strConfiguration), namePlayers, new GameRandom(seed));
+    }
+
+    /**
+     * create new game with specific configuration that is reproducible and keeps its regions off the heap,
+     * for the largest maps
+     *
+     * @param strConfiguration configuration of the game
+     * @param namePlayers names of players in turn order
+     * @param seed seed of the randomness of the game
+     * @return instance of the game
+     * @see OffHeapBoard
+     */
+    public static Game createOffHeapGame(String strConfiguration, List<String> namePlayers, long seed) {
         Configuration configuration = loadConfig(strConfiguration);
-        List<Region> territory = createTerritory(configuration);
-        Player player1 = createPlayer(configuration, territory, namePlayer1);
-        Player player2 = createPlayer(configuration, territory, namePlayer2);
-        return new GameProps(configuration, territory, player1, player2);
+        OffHeapBoard board = new OffHeapBoard(configuration.rows(), configuration.cols(), configuration.maxDeposit());
+        return createGame(configuration, board.territory(), namePlayers, new GameRandom(seed));
+    }
+
+    /**
+     * @param random source of randomness used to place the players, then owned by the game
+     */
+    static GameProps createGame(Configuration configuration, List<String> namePlayers, GameRandom random) {
+        return createGame(configuration, createTerritory(configuration), namePlayers, random);
+    }
+
+    private static GameProps createGame(Configuration configuration, List<Region> territory, List<String> namePlayers,
+                                        GameRandom random) {
+        List<Player> players = new ArrayList<>(namePlayers.size());
+        FreeRegions free = new FreeRegions(territory);
+        for (String name : namePlayers)
+            players.add(createPlayer(configuration, territory, name, free, random));
+        return new GameProps(configuration, territory, players, random);
     }
 }
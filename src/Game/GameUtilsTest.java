@@ -2,11 +2,13 @@ package Game;
 
 import Game.GameException.*;
 import org.junit.jupiter.api.Test;
+import Player.Player;
 import Region.*;
 
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -67,4 +69,75 @@ public final class GameUtilsTest {
                 """, "player1", "player2");
         assertEquals(100*100, game.getTerritory().size());
     }
+
+    @Test
+    public void createManyPlayersGame() {
+        Game game = GameUtils.createCustomGame("""
+                m=10
+                n=10
+                """, List.of("a", "b", "c", "d"));
+        assertEquals(4, game.getPlayers().size());
+        long cityCenters = game.getTerritory().stream().filter(Region::getIsCityCenter).count();
+        assertEquals(4, cityCenters);
+        for (Player player : game.getPlayers()) {
+            assertEquals(player, game.getCurrentPlayer());
+            game.submitPlan("done");
+        }
+        assertEquals(game.getPlayer1(), game.getCurrentPlayer());
+        assertEquals(2, game.getTurn());
+    }
+
+    @Test
+    public void seededGame() {
+        List<String> names = List.of("a", "b", "c");
+        Game game1 = GameUtils.createCustomGame("m=10 n=10", names, 42);
+        Game game2 = GameUtils.createCustomGame("m=10 n=10", names, 42);
+        for (int i = 0; i < game1.getTerritory().size(); i++)
+            assertEquals(game1.getTerritory().get(i).getIsCityCenter(), game2.getTerritory().get(i).getIsCityCenter());
+        for (int i = 0; i < 6; i++) {
+            game1.submitPlan("x = random y = random");
+            game2.submitPlan("x = random y = random");
+        }
+        for (int i = 0; i < names.size(); i++) {
+            Map<String, Long> identifiers = game1.getPlayers().get(i).identifiers();
+            assertEquals(identifiers, game2.getPlayers().get(i).identifiers());
+            assertTrue(identifiers.get("x") >= 0 && identifiers.get("x") < 1000);
+        }
+    }
+
+    @Test
+    public void fillBoard() {
+        Game game = GameUtils.createCustomGame("m=2 n=2", List.of("a", "b", "c", "d"));
+        assertEquals(4, game.getTerritory().stream().filter(Region::getIsCityCenter).count());
+        assertEquals(0, ((GameProps) game).unoccupiedRegions());
+        assertThrows(NoFreeRegion.class, ((GameProps) game)::pickUnoccupiedRegion);
+        assertThrows(NoFreeRegion.class, () -> GameUtils.createCustomGame("m=2 n=2", List.of("a", "b", "c", "d", "e")));
+    }
+
+    @Test
+    public void createPlayer() {
+        Configuration configuration = GameUtils.loadConfig("m=2 n=2");
+        List<Region> territory = GameUtils.createTerritory(configuration);
+        FreeRegions free = new FreeRegions(territory);
+        Set<Region> centers = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            Player player = GameUtils.createPlayer(configuration, territory, "p" + i, free);
+            Region center = territory.stream().filter(region -> region.getOwner() == player).findFirst().orElseThrow();
+            assertTrue(center.getIsCityCenter());
+            assertTrue(centers.add(center));
+        }
+        assertEquals(0, free.size());
+        assertThrows(NoFreeRegion.class, () -> GameUtils.createPlayer(configuration, territory, "p4", free));
+    }
+
+    @Test
+    public void pickUnoccupiedRegion() {
+        GameProps game = (GameProps) GameUtils.createGame(List.of("a", "b"), 7);
+        assertEquals(14, game.unoccupiedRegions());
+        game.submitPlan("move up invest 10");
+        long owned = game.getTerritory().stream().filter(region -> region.getOwner() != null).count();
+        assertEquals(16 - owned, game.unoccupiedRegions());
+        for (int i = 0; i < 100; i++)
+            assertNull(game.pickUnoccupiedRegion().getOwner());
+    }
 }
@@ -0,0 +1,117 @@
+package Game;
+
+import Parser.Plan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * replays a logged game from its initial save. a game is rebuilt from the nearest checkpoint before the turn
+ * sought, and a checkpoint is taken at the start of every k-th turn the first time the replay executes it,
+ * so once the replay went that far seeking to any turn costs at most k turns.
+ */
+public final class Replay {
+    public enum Mode {
+        /**
+         * execute the logged plans again, the identifiers of the players are replayed too
+         */
+        Execute,
+        /**
+         * apply the logged actions without executing the plans, the identifiers of the players are
+         * left as in the checkpoint the replay started from. the generator of the game is restored from
+         * the log after every turn
+         */
+        FastForward,
+    }
+
+    private record Checkpoint(int position, ByteBuffer state) {
+    }
+
+    private final List<TurnLog.Entry> entries;
+    private final int checkpointEvery;
+    private final long firstTurn;
+    private final TreeMap<Long, Checkpoint> checkpoints;
+    private final Map<String, Plan> plans;
+
+    /**
+     * @param start           save of the game before the first logged plan
+     * @param entries         logged plans in order
+     * @param checkpointEvery number of turns between two checkpoints
+     */
+    public Replay(ByteBuffer start, List<TurnLog.Entry> entries, int checkpointEvery) {
+        if (checkpointEvery < 1)
+            throw new IllegalArgumentException("checkpointEvery must be positive");
+        this.entries = List.copyOf(entries);
+        this.checkpointEvery = checkpointEvery;
+        this.firstTurn = GameFile.decode(start.duplicate()).getTurn();
+        this.checkpoints = new TreeMap<>();
+        this.checkpoints.put(firstTurn, new Checkpoint(0, start.asReadOnlyBuffer()));
+        this.plans = new HashMap<>();
+    }
+
+    /**
+     * @param save save of the game before the first logged plan, see {@link GameFile#save(GameProps, Path)}
+     * @param log  log of the game, see {@link TurnLog}
+     */
+    public static Replay open(Path save, Path log, int checkpointEvery) throws IOException {
+        return new Replay(ByteBuffer.wrap(Files.readAllBytes(save)), TurnLog.read(log), checkpointEvery);
+    }
+
+    /**
+     * @return number of checkpoints taken so far, including the initial save
+     */
+    public int checkpoints() {
+        return checkpoints.size();
+    }
+
+    /**
+     * rebuild the game as it was at the start of a turn, or at the end of the log if the log ends before
+     *
+     * @return a new game owned by the caller
+     * @throws GameException.InvalidSave if the log does not match the game or a logged plan fails
+     */
+    public GameProps seek(long turn, Mode mode) {
+        Map.Entry<Long, Checkpoint> checkpoint = checkpoints.floorEntry(turn);
+        if (checkpoint == null)
+            throw new IllegalArgumentException("turn " + turn + " is before the start of the replay");
+        GameProps game = GameFile.decode(checkpoint.getValue().state().duplicate());
+        int position = checkpoint.getValue().position();
+        while (position < entries.size() && entries.get(position).turn() < turn) {
+            TurnLog.Entry entry = entries.get(position++);
+            play(game, entry, mode);
+            // a fast forwarded game lacks the identifiers, only executed games are checkpointed
+            long reached = game.getTurn();
+            if (mode == Mode.Execute && reached > entry.turn() && (reached - firstTurn) % checkpointEvery == 0
+                    && !checkpoints.containsKey(reached))
+                checkpoints.put(reached, new Checkpoint(position, GameFile.encode(game).asReadOnlyBuffer()));
+        }
+        return game;
+    }
+
+    private void play(GameProps game, TurnLog.Entry entry, Mode mode) {
+        if (entry.player() != game.current || entry.turn() != game.getTurn())
+            throw new GameException.InvalidSave("log does not match the game at turn " + entry.turn());
+        if (mode == Mode.Execute) {
+            try {
+                game.submitPlan(plans.computeIfAbsent(entry.plan(), Plan::compile));
+            } catch (RuntimeException e) {
+                // only plans that succeeded are logged
+                throw new GameException.InvalidSave("logged plan fails at turn " + entry.turn() + ": "
+                        + e.getMessage());
+            }
+            if (game.random.state() != entry.random())
+                throw new GameException.InvalidSave("logged random state does not match the game at turn "
+                        + entry.turn());
+        } else {
+            if (!game.replayTurn(entry.actions()))
+                throw new GameException.InvalidSave("logged outcomes do not match the game at turn " + entry.turn());
+            game.random.restore(entry.random());
+        }
+    }
+}
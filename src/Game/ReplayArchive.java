@@ -0,0 +1,426 @@
+package Game;
+
+import Player.Player;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * compact archive of every board of a game. instead of a full board per turn, a frame only holds the cells
+ * the turn changed, and the interest paid at the end of a turn is recomputed from the configuration
+ * rather than stored: a cell is only written when its state differs from the state predicted by paying
+ * the interest on the previous board. a frame also holds the actions applied during its turn.
+ * <p>
+ * layout of version 3, every number is a varint:
+ * <pre>
+ * magic (4 bytes) version startSaveLength startSave
+ * then for every turn: turnsEnded playerSlot winnerSlot budgetCount (playerIndex signedBudgetChange)*
+ *                      cellCount (cellGap &lt;&lt; 2 | flags [signedDepositChange] [ownerSlot &lt;&lt; 1 | cityCenter])*
+ *                      actionCount (kind direction+1 signedValue outcome)*
+ * </pre>
+ * the start save is a {@link GameFile} save, cells are in increasing order and the gap is the number of cells
+ * skipped since the previous one, bit 0 of the flags is set when the deposit differs from the prediction and
+ * bit 1 when the owner or city center differ. the movements of the city crew are not archived.
+ * version 2 is the same without the winner, and version 1 also without the actions.
+ */
+public final class ReplayArchive {
+    static final int MAGIC = 0x55504241; // "UPBA"
+    static final int VERSION = 3;
+    private static final int DEPOSIT = 1;
+    private static final int OWNER = 2;
+
+    private ReplayArchive() {
+    }
+
+    /**
+     * state of the board after the latest frame. the owned cells are also kept as a dense list, only they earn
+     * interest, so ending a turn costs O(owned cells) rather than O(board).
+     */
+    private static final class Board {
+        private final Configuration config;
+        private final long[] deposits;
+        private final int[] owners;
+        private final long[] budgets;
+        private final int[] owned;
+        private final int[] positions;
+        private int ownedSize;
+        private long turn;
+        private int playedBy = -1;
+        private int winner;
+
+        private Board(Configuration config, long[] deposits, int[] owners, long[] budgets) {
+            this.config = config;
+            this.deposits = deposits;
+            this.owners = owners;
+            this.owned = new int[deposits.length];
+            this.positions = new int[deposits.length];
+            Arrays.fill(positions, -1);
+            this.budgets = budgets;
+        }
+
+        private Board(GameProps game) {
+            this(game.config, new long[game.territory.size()], new int[game.territory.size()],
+                    new long[game.players.length]);
+            for (int i = 0; i < deposits.length; i++) {
+                deposits[i] = game.territory.get(i).getDeposit();
+                setOwner(i, game.slotOf(game.territory.get(i).getOwner()) << 1
+                        | (game.territory.get(i).getIsCityCenter() ? 1 : 0));
+            }
+            for (int i = 0; i < budgets.length; i++)
+                budgets[i] = game.players[i].getBudget();
+            this.turn = game.turn;
+            this.winner = game.playerIndex(game.winner);
+        }
+
+        /**
+         * take over the arrays of a decoded save
+         */
+        private Board(GameFile.Board save) {
+            this(save.config(), save.deposits(), save.owners(), save.budgets());
+            for (int i = 0; i < owners.length; i++)
+                setOwner(i, owners[i]);
+            this.turn = save.turn();
+            this.winner = save.winnerSlot() - 1;
+        }
+
+        /**
+         * @param owner owner slot &lt;&lt; 1 | city center
+         */
+        private void setOwner(int cell, int owner) {
+            owners[cell] = owner;
+            int position = positions[cell];
+            if (owner >> 1 != 0 && position < 0) {
+                positions[cell] = ownedSize;
+                owned[ownedSize++] = cell;
+            } else if (owner >> 1 == 0 && position >= 0) {
+                int last = owned[--ownedSize];
+                owned[position] = last;
+                positions[last] = position;
+                positions[cell] = -1;
+            }
+        }
+
+        /**
+         * pay the interest of the given number of turns on every owned cell
+         */
+        private void payInterest(long turnsEnded) {
+            for (int i = 0; i < ownedSize; i++) {
+                int cell = owned[i];
+                deposits[cell] = predict(cell, turnsEnded);
+            }
+        }
+
+        /**
+         * @return deposit of the cell once the interest of the given number of turns is paid
+         */
+        private long predict(int cell, long turnsEnded) {
+            long deposit = deposits[cell];
+            if (owners[cell] >> 1 == 0)
+                return deposit;
+            for (long i = 0; i < turnsEnded; i++)
+                deposit = Math.min(config.maxDeposit(), Math.max(0, deposit + GameProps.interest(config, turn + i, deposit)));
+            return deposit;
+        }
+    }
+
+    /**
+     * archives the turns of a game as they are published
+     */
+    public static final class Writer {
+        private final Board board;
+        private ByteBuffer buffer;
+        private TurnDelta appended;
+        private long[] order = new long[64];
+
+        /**
+         * @param game game between two turns, the archive starts from its current state
+         */
+        public Writer(GameProps game) {
+            this.board = new Board(game);
+            ByteBuffer start = GameFile.encode(game);
+            this.buffer = ByteBuffer.allocate(Math.max(1024, 2 * start.remaining()));
+            buffer.putInt(MAGIC);
+            Varints.putLong(buffer, VERSION);
+            Varints.putLong(buffer, start.remaining());
+            buffer.put(start);
+        }
+
+        /**
+         * archive the turn the game published last, must run on the thread playing the game after every turn
+         *
+         * @throws IllegalStateException if the game did not publish a turn following the archived ones
+         */
+        public void append(GameProps game) {
+            TurnDelta delta = game.lastDelta();
+            if (delta == null || delta == appended || delta.getTurn() < board.turn)
+                throw new IllegalStateException("no new turn published");
+            appended = delta;
+            long turnsEnded = game.turn - board.turn;
+            Map<Player, Long> budgets = delta.budgets();
+            int size = delta.size();
+            ensureCapacity((4 + 2 * budgets.size() + 3 * size) * Varints.MAX_SIZE + game.turnActions.maxEncodedSize());
+
+            Varints.putLong(buffer, turnsEnded);
+            Varints.putLong(buffer, game.slotOf(delta.getPlayer()));
+            Varints.putLong(buffer, game.slotOf(game.winner));
+            Varints.putLong(buffer, budgets.size());
+            for (Map.Entry<Player, Long> entry : budgets.entrySet()) {
+                int index = game.playerIndex(entry.getKey());
+                Varints.putLong(buffer, index);
+                Varints.putSignedLong(buffer, entry.getValue() - board.budgets[index]);
+                board.budgets[index] = entry.getValue();
+            }
+
+            // the turn marked every owned cell when paying the interest, only the unpredictable ones are written
+            if (order.length < size)
+                order = new long[Math.max(size, order.length * 2)];
+            int changed = 0;
+            for (int i = 0; i < size; i++) {
+                int cell = delta.cellIndex(i);
+                int owner = game.slotOf(delta.getOwner(i)) << 1 | (delta.getIsCityCenter(i) ? 1 : 0);
+                long predicted = board.predict(cell, turnsEnded);
+                if (delta.getDeposit(i) != predicted || owner != board.owners[cell])
+                    order[changed++] = (long) cell << 32 | i;
+                else
+                    board.deposits[cell] = predicted;
+            }
+            Arrays.sort(order, 0, changed);
+            Varints.putLong(buffer, changed);
+            int previous = -1;
+            for (int j = 0; j < changed; j++) {
+                int cell = (int) (order[j] >>> 32);
+                int i = (int) order[j];
+                int owner = game.slotOf(delta.getOwner(i)) << 1 | (delta.getIsCityCenter(i) ? 1 : 0);
+                long change = delta.getDeposit(i) - board.predict(cell, turnsEnded);
+                int flags = (change != 0 ? DEPOSIT : 0) | (owner != board.owners[cell] ? OWNER : 0);
+                Varints.putLong(buffer, (long) (cell - previous - 1) << 2 | flags);
+                if (change != 0)
+                    Varints.putSignedLong(buffer, change);
+                if (owner != board.owners[cell])
+                    Varints.putLong(buffer, owner);
+                board.deposits[cell] = delta.getDeposit(i);
+                board.setOwner(cell, owner);
+                previous = cell;
+            }
+            game.turnActions.encode(buffer);
+            board.turn = game.turn;
+        }
+
+        private void ensureCapacity(int size) {
+            if (buffer.remaining() >= size)
+                return;
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+            buffer.flip();
+            buffer = grown.put(buffer);
+        }
+
+        /**
+         * @return number of bytes archived so far
+         */
+        public int size() {
+            return buffer.position();
+        }
+
+        /**
+         * @return read-only buffer ready to be read holding the archive so far
+         */
+        public ByteBuffer archive() {
+            return buffer.asReadOnlyBuffer().flip();
+        }
+
+        public void save(Path path) throws IOException {
+            ByteBuffer archive = archive();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (archive.hasRemaining())
+                    channel.write(archive);
+            }
+        }
+    }
+
+    /**
+     * rebuilds the boards of an archive one turn after the other
+     */
+    public static final class Reader {
+        private final ByteBuffer buffer;
+        private final ByteBuffer start;
+        private final Board board;
+        private final long startTurn;
+        private final boolean hasActions;
+        private final boolean hasWinner;
+        private final CommandBuffer actions = new CommandBuffer();
+
+        /**
+         * @param archive buffer positioned at the start of an archive
+         * @throws GameException.InvalidSave if the buffer is not an archive of a supported version
+         */
+        public Reader(ByteBuffer archive) {
+            this.buffer = archive.duplicate();
+            try {
+                if (buffer.remaining() < 4 || buffer.getInt() != MAGIC)
+                    throw new GameException.InvalidSave("not a replay archive");
+                long version = Varints.getLong(buffer);
+                if (version < 1 || version > VERSION)
+                    throw new GameException.InvalidSave("unsupported replay archive version " + version);
+                int length = (int) Varints.getLong(buffer);
+                if (length < 0 || length > buffer.remaining())
+                    throw new GameException.InvalidSave("truncated or corrupted");
+                this.start = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                this.hasActions = version >= 2;
+                this.hasWinner = version >= 3;
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw new GameException.InvalidSave("truncated or corrupted");
+            }
+            // the replay only needs the board, the game itself is only built on request
+            this.board = new Board(GameFile.decodeBoard(start.duplicate()));
+            this.startTurn = board.turn;
+            if (!hasWinner)
+                board.winner = -1;
+        }
+
+        /**
+         * map an archive file, the file is read as the archive is iterated
+         */
+        public static Reader open(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return new Reader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        /**
+         * @return a new game in the state the archive starts from, owned by the caller, decoded on every call
+         */
+        public GameProps start() {
+            return GameFile.decode(start.duplicate());
+        }
+
+        /**
+         * @return turn the game was in when the archive starts
+         */
+        public long getStartTurn() {
+            return startTurn;
+        }
+
+        /**
+         * move to the board after the next archived turn
+         *
+         * @return `false` at the end of the archive
+         * @throws GameException.InvalidSave if the frame is damaged
+         */
+        public boolean next() {
+            if (!buffer.hasRemaining())
+                return false;
+            try {
+                long turnsEnded = Varints.getLong(buffer);
+                board.playedBy = (int) Varints.getLong(buffer) - 1;
+                if (hasWinner)
+                    board.winner = (int) Varints.getLong(buffer) - 1;
+                long budgets = Varints.getLong(buffer);
+                for (long i = 0; i < budgets; i++) {
+                    int index = (int) Varints.getLong(buffer);
+                    board.budgets[index] += Varints.getSignedLong(buffer);
+                }
+                if (turnsEnded > 0)
+                    board.payInterest(turnsEnded);
+                long cells = Varints.getLong(buffer);
+                int cell = -1;
+                for (long i = 0; i < cells; i++) {
+                    long header = Varints.getLong(buffer);
+                    cell += (int) (header >>> 2) + 1;
+                    if ((header & DEPOSIT) != 0)
+                        board.deposits[cell] += Varints.getSignedLong(buffer);
+                    if ((header & OWNER) != 0)
+                        board.setOwner(cell, (int) Varints.getLong(buffer));
+                }
+                if (hasActions)
+                    actions.decode(buffer);
+                board.turn += turnsEnded;
+                return true;
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new GameException.InvalidSave("truncated or corrupted");
+            }
+        }
+
+        public Configuration getConfiguration() {
+            return board.config;
+        }
+
+        /**
+         * @return number of players, eliminated ones included
+         */
+        public int players() {
+            return board.budgets.length;
+        }
+
+        /**
+         * @return number of regions in the territory
+         */
+        public int cells() {
+            return board.deposits.length;
+        }
+
+        /**
+         * @return actions applied during the turn of the current board, only those of the last turn for a
+         * board published after several turns, empty before the first turn or for an archive of version 1.
+         * the buffer is reused by the next turn
+         */
+        public CommandBuffer actions() {
+            return actions;
+        }
+
+        /**
+         * @return turn the game is in after the current board
+         */
+        public long getTurn() {
+            return board.turn;
+        }
+
+        /**
+         * @return index in turn order of the player who played the turn of the current board,
+         * `-1` for a simultaneous turn or before the first turn
+         */
+        public int playedBy() {
+            return board.playedBy;
+        }
+
+        /**
+         * @return index in turn order of the winner after the current board, `-1` if the game is not won yet or
+         * the archive is older than version 3, which did not record the winner
+         */
+        public int winner() {
+            return board.winner;
+        }
+
+        /**
+         * @param cell index of the region in the territory
+         */
+        public long getDeposit(int cell) {
+            return board.deposits[cell];
+        }
+
+        /**
+         * @return index in turn order of the owner of the region, `-1` if the region has no owner
+         */
+        public int getOwner(int cell) {
+            return (board.owners[cell] >> 1) - 1;
+        }
+
+        public boolean getIsCityCenter(int cell) {
+            return (board.owners[cell] & 1) != 0;
+        }
+
+        /**
+         * @param player index of the player in turn order
+         */
+        public long getBudget(int player) {
+            return board.budgets[player];
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package Game;
+
+import Parser.Plan;
+import Region.Point;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class ReplayArchiveTest {
+    private static final List<Plan> PLANS = List.of(
+            Plan.compile("d = random % 4 if (d) then move up else move downright invest random % 40 + 1"),
+            Plan.compile("n = random % 30 if (random % 2) then move upleft else move down invest n collect random % 3"),
+            Plan.compile("invest 10 move downleft invest 5 if (random % 5) then shoot up 3 else done"));
+
+    private static void assertBoard(GameSnapshot snapshot, GameProps game, ReplayArchive.Reader reader) {
+        assertEquals(snapshot.getTurn(), reader.getTurn());
+        assertEquals(game.playerIndex(snapshot.winner()), reader.winner());
+        for (int i = 0; i < game.players.length; i++)
+            assertEquals(snapshot.budget(game.players[i]), reader.getBudget(i));
+        int cols = (int) snapshot.cols();
+        for (int cell = 0; cell < snapshot.rows() * cols; cell++) {
+            Point point = Point.of(cell % cols, cell / cols);
+            assertEquals(snapshot.getDeposit(point), reader.getDeposit(cell));
+            assertEquals(game.playerIndex(snapshot.getOwner(point)), reader.getOwner(cell));
+            assertEquals(snapshot.isCityCenter(point), reader.getIsCityCenter(cell));
+        }
+    }
+
+    @Test
+    public void roundTrip() {
+        GameProps game = (GameProps) GameUtils.createCustomGame("m=12 n=12 interest_pct=5", List.of("a", "b", "c"), 45);
+        ReplayArchive.Writer writer = new ReplayArchive.Writer(game);
+        List<GameSnapshot> boards = new ArrayList<>();
+        while (game.getTurn() <= 40 && game.winner() == null) {
+            game.submitPlan(PLANS.get(game.current));
+            writer.append(game);
+            boards.add(game.snapshot());
+        }
+        assertThrows(IllegalStateException.class, () -> writer.append(game));
+        game.simulate(PLANS, 5); // one delta for several turns
+        writer.append(game);
+        boards.add(game.snapshot());
+
+        ReplayArchive.Reader reader = new ReplayArchive.Reader(writer.archive());
+        assertEquals(1, reader.getStartTurn());
+        assertEquals(1, reader.start().getTurn());
+        for (GameSnapshot board : boards) {
+            assertTrue(reader.next());
+            assertBoard(board, game, reader);
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void rejectDamagedArchive() {
+        GameProps game = (GameProps) GameUtils.createGame(List.of("a", "b"), 4);
+        ReplayArchive.Writer writer = new ReplayArchive.Writer(game);
+        game.submitPlan("invest 10");
+        writer.append(game);
+        ByteBuffer archive = writer.archive();
+        ByteBuffer truncated = archive.slice(0, archive.limit() - 1);
+        ReplayArchive.Reader reader = new ReplayArchive.Reader(truncated);
+        assertThrows(GameException.InvalidSave.class, reader::next);
+        assertThrows(GameException.InvalidSave.class, () -> new ReplayArchive.Reader(ByteBuffer.allocate(16)));
+    }
+
+    /**
+     * size against a full save per turn, the naive archive
+     */
+    @Test
+    public void againstFullSnapshots() {
+        GameProps game = (GameProps) GameUtils.createCustomGame("m=40 n=40 interest_pct=5", List.of("a", "b", "c"), 46);
+        ReplayArchive.Writer writer = new ReplayArchive.Writer(game);
+        long fullSize = GameFile.encode(game).remaining();
+        int turns = 0;
+        while (game.getTurn() <= 200 && game.winner() == null) {
+            game.submitPlan(PLANS.get(game.current));
+            writer.append(game);
+            fullSize += GameFile.encode(game).remaining();
+            turns++;
+        }
+        assertTrue(writer.size() * 10L < fullSize, writer.size() + " bytes against " + fullSize);
+
+        ReplayArchive.Reader reader = new ReplayArchive.Reader(writer.archive());
+        int read = 0;
+        while (reader.next())
+            read++;
+        assertEquals(turns, read);
+        assertBoard(game.snapshot(), game, reader);
+    }
+}
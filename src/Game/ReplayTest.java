@@ -0,0 +1,127 @@
+package Game;
+
+import Parser.Plan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class ReplayTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void seek() throws IOException {
+        GameProps game = (GameProps) GameUtils.createCustomGame("m=10 n=10 interest_pct=5", List.of("a", "b"), 21);
+        Path save = directory.resolve("start.bin");
+        Path log = directory.resolve("turns.log");
+        GameFile.save(game, save);
+        Map<Long, Long> hashes = new HashMap<>();
+        try (TurnLog turnLog = TurnLog.open(log, 0)) {
+            game.setTurnLog(turnLog);
+            String[] plans = {
+                    "d = random % 6 if (d) then move up else move down invest random % 20 + 1",
+                    "n = random % 30 if (random % 2) then move upleft else move downright invest n",
+            };
+            while (game.getTurn() <= 30 && game.winner() == null) {
+                if (game.getCurrentPlayer() == game.getPlayer1())
+                    hashes.put(game.getTurn(), game.stateHash());
+                game.submitPlan(plans[game.getCurrentPlayer() == game.getPlayer1() ? 0 : 1]);
+            }
+        }
+
+        Replay replay = Replay.open(save, log, 5);
+        assertEquals(1, replay.checkpoints());
+        GameProps at30 = replay.seek(30, Replay.Mode.Execute);
+        assertEquals(hashes.get(30L), at30.stateHash());
+        assertEquals(6, replay.checkpoints()); // start of turns 1, 6, 11, 16, 21 and 26
+        for (long turn : new long[]{1, 7, 13, 26, 30}) {
+            assertEquals(hashes.get(turn), replay.seek(turn, Replay.Mode.Execute).stateHash());
+            assertEquals(hashes.get(turn), replay.seek(turn, Replay.Mode.FastForward).stateHash());
+        }
+        GameProps end = replay.seek(Long.MAX_VALUE, Replay.Mode.Execute);
+        assertEquals(game.stateHash(), end.stateHash());
+        assertEquals(game.getPlayer2().identifiers(), end.getPlayer2().identifiers());
+    }
+
+    @Test
+    public void rejectMismatchedLog() {
+        GameProps game = (GameProps) GameUtils.createGame(List.of("a", "b"), 2);
+        ByteBuffer start = GameFile.encode(game);
+        CommandBuffer actions = new CommandBuffer();
+        actions.collect(-1);
+        actions.recordOutcome(true); // a negative collect always fails
+        Replay replay = new Replay(start, List.of(new TurnLog.Entry(1, 0, "collect 0 - 1", game.random.state(), actions)), 1);
+        assertThrows(GameException.InvalidSave.class, () -> replay.seek(2, Replay.Mode.FastForward));
+        GameProps executed = replay.seek(2, Replay.Mode.Execute); // the log ends after the first plan
+        assertEquals(executed.getPlayer2(), executed.getCurrentPlayer());
+        Replay wrongPlayer = new Replay(start, List.of(new TurnLog.Entry(1, 1, "done", game.random.state(), new CommandBuffer())), 1);
+        assertThrows(GameException.InvalidSave.class, () -> wrongPlayer.seek(2, Replay.Mode.Execute));
+        Replay failing = new Replay(start, List.of(new TurnLog.Entry(1, 0, "x = nope", game.random.state(),
+                new CommandBuffer())), 1);
+        assertThrows(GameException.InvalidSave.class, () -> failing.seek(2, Replay.Mode.Execute));
+    }
+
+    @Test
+    public void failedPlanDrawsNoRandom() throws IOException {
+        GameProps game = (GameProps) GameUtils.createGame(List.of("a", "b"), 13);
+        Path save = directory.resolve("start.bin");
+        Path log = directory.resolve("turns.log");
+        GameFile.save(game, save);
+        try (TurnLog turnLog = TurnLog.open(log, 0)) {
+            game.setTurnLog(turnLog);
+            // the failed plan is rolled back and never logged, so it must not move the generator either
+            assertThrows(RuntimeException.class, () -> game.submitPlan("x = random y = nope"));
+            game.submitPlan("z = random");
+            game.submitPlan("z = random");
+        }
+        GameProps replayed = Replay.open(save, log, 5).seek(Long.MAX_VALUE, Replay.Mode.Execute);
+        assertEquals(game.getPlayer1().identifiers().get("z"), replayed.getPlayer1().identifiers().get("z"));
+        assertEquals(game.getPlayer2().identifiers().get("z"), replayed.getPlayer2().identifiers().get("z"));
+        assertEquals(game.stateHash(), replayed.stateHash());
+    }
+
+    @Test
+    public void replaySimulation() throws IOException {
+        GameProps game = (GameProps) GameUtils.createCustomGame("m=10 n=10 interest_pct=5", List.of("a", "b"), 29);
+        Path save = directory.resolve("start.bin");
+        Path log = directory.resolve("turns.log");
+        GameFile.save(game, save);
+        try (TurnLog turnLog = TurnLog.open(log, 0)) {
+            game.setTurnLog(turnLog);
+            game.simulate(Plan.compile("invest random % 20 + 1 move up"),
+                    Plan.compile("x = random if (x % 3) then y = nope else move downleft"), 20);
+        }
+        assertEquals(40, TurnLog.read(log).size());
+        Replay replay = Replay.open(save, log, 5);
+        assertEquals(game.stateHash(), replay.seek(Long.MAX_VALUE, Replay.Mode.Execute).stateHash());
+        assertEquals(game.stateHash(), replay.seek(Long.MAX_VALUE, Replay.Mode.FastForward).stateHash());
+    }
+
+    @Test
+    public void continueFastForward() throws IOException {
+        GameProps game = (GameProps) GameUtils.createCustomGame("m=10 n=10", List.of("a", "b"), 31);
+        Path save = directory.resolve("start.bin");
+        Path log = directory.resolve("turns.log");
+        GameFile.save(game, save);
+        try (TurnLog turnLog = TurnLog.open(log, 0)) {
+            game.setTurnLog(turnLog);
+            for (int i = 0; i < 6; i++)
+                game.submitPlan("x = random invest x % 10 + 1");
+            game.setTurnLog(null);
+        }
+        // the plans drew random numbers that fast forwarding does not draw, the log restores the generator
+        GameProps forwarded = Replay.open(save, log, 5).seek(Long.MAX_VALUE, Replay.Mode.FastForward);
+        game.submitPlan("y = random");
+        forwarded.submitPlan("y = random");
+        assertEquals(game.getPlayer1().identifiers().get("y"), forwarded.getPlayer1().identifiers().get("y"));
+        assertEquals(game.stateHash(), forwarded.stateHash());
+    }
+}
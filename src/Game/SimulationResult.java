@@ -0,0 +1,14 @@
+package Game;
+
+import Player.Player;
+
+/**
+ * outcome of {@link Game#simulate(java.util.List, long)}
+ *
+ * @param winner      last player in the game, `null` if the game did not end
+ * @param turns       number of turns played
+ * @param plans       number of plans executed
+ * @param failedPlans number of plans that failed and were rolled back, the player passed instead
+ */
+public record SimulationResult(Player winner, long turns, long plans, long failedPlans) {
+}
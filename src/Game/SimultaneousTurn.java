@@ -0,0 +1,84 @@
+package Game;
+
+import Parser.Plan;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * game mode where every player plays the same turn. the plans of all players are executed in parallel
+ * against the start-of-turn state, their actions are recorded into command buffers and the buffers
+ * are then applied to the game in a deterministic merge step. the budgets and identifiers of the players
+ * only change once the merge succeeded.
+ */
+public class SimultaneousTurn {
+    private final GameProps game;
+    private final Executor executor;
+    private final DecideView[] views;
+
+    /**
+     * @param game     game played in simultaneous turns, must not be played in turn at the same time
+     * @param executor executor running the plans of the players
+     */
+    public SimultaneousTurn(GameProps game, Executor executor) {
+        this.game = game;
+        this.executor = executor;
+        this.views = new DecideView[game.players.length];
+        for (int i = 0; i < views.length; i++)
+            views[i] = new DecideView(game, i);
+    }
+
+    /**
+     * play one turn, the game is left unchanged if any plan fails
+     *
+     * @param plans plan of every player in turn order, eliminated players are ignored
+     */
+    public void submitPlans(List<Plan> plans) {
+        if (plans.size() != views.length)
+            throw new IllegalArgumentException("expected " + views.length + " plans");
+        if (game.winner() != null)
+            throw new GameException.GameEnded();
+        CompletableFuture<?>[] decisions = new CompletableFuture<?>[views.length];
+        for (int i = 0; i < views.length; i++) {
+            if (game.isEliminated(game.players[i]))
+                continue;
+            DecideView view = views[i];
+            Plan plan = plans.get(i);
+            decisions[i] = CompletableFuture.runAsync(() -> view.decide(plan), executor);
+        }
+        RuntimeException failure = null;
+        for (CompletableFuture<?> decision : decisions) {
+            if (decision == null)
+                continue;
+            try {
+                decision.join();
+            } catch (CompletionException e) {
+                if (failure == null)
+                    failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+        CommandBuffer[] commands = new CommandBuffer[views.length];
+        for (int i = 0; i < views.length; i++) {
+            if (decisions[i] != null)
+                commands[i] = views[i].actions();
+        }
+        game.applyCommands(commands);
+        // the views only wrote to their own copies, the identifiers are kept once the merge succeeded
+        for (int i = 0; i < views.length; i++) {
+            if (decisions[i] != null)
+                views[i].commit();
+        }
+    }
+
+    /**
+     * stop the plans being executed, the turn fails with {@link GameException.ExecutionStopped}
+     */
+    public void cancelExecution() {
+        for (DecideView view : views)
+            view.cancelExecution();
+    }
+}
@@ -0,0 +1,107 @@
+package Game;
+
+import Player.Player;
+import Region.Point;
+import Region.Region;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * changes made by one turn: the regions that changed with their new state, the budgets that changed
+ * and every location the city crew moved to. applying the deltas in order to a copy of the board
+ * keeps it in sync with the game.
+ */
+public final class TurnDelta {
+    private final long turn;
+    private final Player player;
+    private final long cols;
+    private final int[] cells;
+    private final long[] deposits;
+    private final Player[] owners;
+    private final boolean[] cityCenters;
+    private final Map<Player, Long> budgets;
+    private final List<Point> cityCrewMoves;
+
+    TurnDelta(long turn, Player player, GameProps game, DirtyRegions dirty, Map<Player, Long> budgets, List<Point> cityCrewMoves) {
+        this.turn = turn;
+        this.player = player;
+        this.cols = game.config.cols();
+        int size = dirty.size();
+        this.cells = new int[size];
+        this.deposits = new long[size];
+        this.owners = new Player[size];
+        this.cityCenters = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            Region region = game.territory.get(dirty.get(i));
+            cells[i] = dirty.get(i);
+            deposits[i] = region.getDeposit();
+            owners[i] = region.getOwner();
+            cityCenters[i] = region.getIsCityCenter();
+        }
+        this.budgets = Collections.unmodifiableMap(new LinkedHashMap<>(budgets));
+        this.cityCrewMoves = Collections.unmodifiableList(new ArrayList<>(cityCrewMoves));
+    }
+
+    /**
+     * @return turn in which the plan was executed
+     */
+    public long getTurn() {
+        return turn;
+    }
+
+    /**
+     * @return player who submitted the plan, `null` for a simultaneous turn
+     */
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * @return number of changed regions
+     */
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * @param i index of the change, between 0 and {@link #size()}
+     * @return index of the region in the territory
+     */
+    public int cellIndex(int i) {
+        return cells[i];
+    }
+
+    public Point getLocation(int i) {
+        return Point.of(cells[i] % cols, cells[i] / cols);
+    }
+
+    public long getDeposit(int i) {
+        return deposits[i];
+    }
+
+    public Player getOwner(int i) {
+        return owners[i];
+    }
+
+    public boolean getIsCityCenter(int i) {
+        return cityCenters[i];
+    }
+
+    /**
+     * @return new budget of every player whose budget changed
+     */
+    public Map<Player, Long> budgets() {
+        return budgets;
+    }
+
+    /**
+     * @return locations of the city crew in the order it moved, starting from the city center
+     */
+    public List<Point> cityCrewMoves() {
+        return cityCrewMoves;
+    }
+}
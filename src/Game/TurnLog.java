@@ -0,0 +1,229 @@
+package Game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * append-only log of the plans of a game and the outcome of every action they made, written through
+ * memory-mapped segments of the file. an entry is a length, a CRC32 of the payload and the payload:
+ * <pre>
+ * turn player planLength plan random actionCount (kind direction+1 signedValue outcome)*
+ * </pre>
+ * random is the state of the generator of the game once the turn ended, so that a replay that does not
+ * execute the plans still continues with the same random numbers. the length is written last, so an entry
+ * torn by a crash reads as the end of the log. the file grows a segment at a time and is trimmed to its
+ * entries on {@link #close()}.
+ */
+public final class TurnLog implements AutoCloseable {
+    static final int MAGIC = 0x5550424C; // "UPBL"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 8;
+    static final int SEGMENT_SIZE = 1 << 20;
+
+    /**
+     * a plan and its actions as logged
+     *
+     * @param turn    turn in which the plan was executed
+     * @param player  index of the player in turn order
+     * @param plan    source of the plan
+     * @param random  state of the generator of the game after the turn
+     * @param actions actions of the plan with their outcome
+     */
+    public record Entry(long turn, int player, String plan, long random, CommandBuffer actions) {
+    }
+
+    private final FileChannel channel;
+    private final int syncEvery;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private int unsynced;
+    private long entries;
+
+    private TurnLog(FileChannel channel, int syncEvery, long end, long entries) throws IOException {
+        this.channel = channel;
+        this.syncEvery = syncEvery;
+        this.entries = entries;
+        map(end, SEGMENT_SIZE);
+    }
+
+    /**
+     * open a log, appending after the valid entries of an existing one
+     *
+     * @param syncEvery number of entries appended between two flushes to the disk, 0 to only flush on
+     *                  {@link #sync()} and {@link #close()}
+     */
+    public static TurnLog open(Path path, int syncEvery) throws IOException {
+        if (syncEvery < 0)
+            throw new IllegalArgumentException("syncEvery must not be negative");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long end = HEADER_SIZE;
+            long entries = 0;
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+                while (header.hasRemaining())
+                    channel.write(header, header.position());
+            } else {
+                ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                List<Entry> existing = new ArrayList<>();
+                end = scan(log, existing);
+                entries = existing.size();
+            }
+            return new TurnLog(channel, syncEvery, end, entries);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return every valid entry of a log in order
+     * @throws GameException.InvalidSave if the file is not a log of a supported version or an entry is corrupted
+     */
+    public static List<Entry> read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<Entry> entries = new ArrayList<>();
+            scan(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), entries);
+            return entries;
+        }
+    }
+
+    /**
+     * @return position after the last valid entry
+     */
+    private static long scan(ByteBuffer log, List<Entry> entries) {
+        if (log.remaining() < HEADER_SIZE || log.getInt() != MAGIC)
+            throw new GameException.InvalidSave("not a turn log");
+        int version = log.getInt();
+        if (version != VERSION)
+            throw new GameException.InvalidSave("unsupported turn log version " + version);
+        CRC32 crc = new CRC32();
+        while (log.remaining() >= 8) {
+            int start = log.position();
+            int length = log.getInt();
+            int checksum = log.getInt();
+            if (length <= 0 || length > log.remaining())
+                return start;
+            ByteBuffer payload = log.slice(log.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum)
+                return start;
+            entries.add(decode(payload));
+            log.position(log.position() + length);
+        }
+        return log.position();
+    }
+
+    /**
+     * @throws GameException.InvalidSave if an entry with a valid checksum does not decode
+     */
+    private static Entry decode(ByteBuffer payload) {
+        try {
+            long turn = Varints.getLong(payload);
+            int player = (int) Varints.getLong(payload);
+            long planLength = Varints.getLong(payload);
+            if (planLength < 0 || planLength > payload.remaining())
+                throw new IllegalArgumentException("plan longer than its entry");
+            byte[] plan = new byte[(int) planLength];
+            payload.get(plan);
+            long random = payload.getLong();
+            CommandBuffer actions = new CommandBuffer();
+            actions.decode(payload);
+            if (payload.hasRemaining())
+                throw new IllegalArgumentException("trailing bytes after the actions");
+            return new Entry(turn, player, new String(plan, StandardCharsets.UTF_8), random, actions);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new GameException.InvalidSave("corrupted turn log entry");
+        }
+    }
+
+    private void map(long position, int size) throws IOException {
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        segmentStart = position;
+    }
+
+    /**
+     * append a plan and its actions, flushing to the disk once enough entries are unsynced
+     *
+     * @param player index of the player in turn order
+     * @param random state of the generator of the game after the turn
+     */
+    public void append(long turn, int player, String plan, long random, CommandBuffer actions) {
+        byte[] source = plan.getBytes(StandardCharsets.UTF_8);
+        int maxSize = 3 * Varints.MAX_SIZE + source.length + Long.BYTES + actions.maxEncodedSize();
+        if (scratch.capacity() < maxSize)
+            scratch = ByteBuffer.allocate(Math.max(maxSize, scratch.capacity() * 2));
+        scratch.clear();
+        Varints.putLong(scratch, turn);
+        Varints.putLong(scratch, player);
+        Varints.putLong(scratch, source.length);
+        scratch.put(source);
+        scratch.putLong(random);
+        actions.encode(scratch);
+        scratch.flip();
+        int length = scratch.remaining();
+        crc.reset();
+        crc.update(scratch.duplicate());
+        try {
+            if (segment.remaining() < length + 8) {
+                segment.force();
+                map(segmentStart + segment.position(), Math.max(SEGMENT_SIZE, length + 8));
+            }
+            int start = segment.position();
+            segment.position(start + 4);
+            segment.putInt((int) crc.getValue());
+            segment.put(scratch);
+            segment.putInt(start, length);
+            entries++;
+            if (syncEvery > 0 && ++unsynced >= syncEvery)
+                sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return number of entries in the log
+     */
+    public long entries() {
+        return entries;
+    }
+
+    /**
+     * flush every appended entry to the disk
+     */
+    public void sync() {
+        segment.force();
+        unsynced = 0;
+    }
+
+    /**
+     * flush the log and trim the file after its last entry. the mapped segments are only unmapped once
+     * they are garbage collected, the log must not be used after it is closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+            long end = segmentStart + segment.position();
+            segment = null;
+            channel.truncate(end);
+        } finally {
+            channel.close();
+        }
+    }
+}
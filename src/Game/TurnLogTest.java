@@ -0,0 +1,128 @@
+package Game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class TurnLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void logPlans() throws IOException {
+        Path path = directory.resolve("turns.log");
+        GameProps game = (GameProps) GameUtils.createGame(List.of("a", "b"), 9);
+        try (TurnLog log = TurnLog.open(path, 2)) {
+            game.setTurnLog(log);
+            game.submitPlan("invest 10 move up shoot upleft 5");
+            assertThrows(RuntimeException.class, () -> game.submitPlan("x = y"));
+            game.submitPlan("collect 5 collect 0 - 1");
+            assertEquals(2, log.entries());
+        }
+
+        List<TurnLog.Entry> entries = TurnLog.read(path);
+        assertEquals(2, entries.size());
+        TurnLog.Entry first = entries.get(0);
+        assertEquals(1, first.turn());
+        assertEquals(0, first.player());
+        assertEquals("invest 10 move up shoot upleft 5", first.plan());
+        CommandBuffer actions = first.actions();
+        assertEquals(3, actions.size());
+        assertNull(actions.direction(0));
+        assertEquals(10, actions.value(0));
+        assertTrue(actions.outcome(0));
+        assertEquals(Direction.Up, actions.direction(1));
+        assertEquals(Direction.UpLeft, actions.direction(2));
+        assertEquals(5, actions.value(2));
+        TurnLog.Entry second = entries.get(1);
+        assertEquals(1, second.player());
+        assertEquals(2, second.actions().size());
+        assertFalse(second.actions().outcome(1)); // negative collect fails
+
+        // reopening appends after the existing entries
+        try (TurnLog log = TurnLog.open(path, 0)) {
+            assertEquals(2, log.entries());
+            game.setTurnLog(log);
+            game.submitPlan("done");
+        }
+        assertEquals(3, TurnLog.read(path).size());
+    }
+
+    @Test
+    public void rollOverSegments() throws IOException {
+        Path path = directory.resolve("large.log");
+        String plan = "x = 1 ".repeat(100_000);
+        CommandBuffer actions = new CommandBuffer();
+        actions.invest(7);
+        actions.recordOutcome(true);
+        try (TurnLog log = TurnLog.open(path, 1)) {
+            for (int i = 0; i < 8; i++)
+                log.append(i, i % 2, plan, i, actions);
+        }
+        List<TurnLog.Entry> entries = TurnLog.read(path);
+        assertEquals(8, entries.size());
+        assertEquals(7, entries.get(7).turn());
+        assertEquals(plan, entries.get(7).plan());
+        assertEquals(7, entries.get(7).random());
+        assertEquals(7, entries.get(7).actions().value(0));
+    }
+
+    @Test
+    public void stopAtTornEntry() throws IOException {
+        Path path = directory.resolve("torn.log");
+        CommandBuffer actions = new CommandBuffer();
+        try (TurnLog log = TurnLog.open(path, 0)) {
+            log.append(1, 0, "done", 0, actions);
+            log.append(1, 1, "done", 0, actions);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            long second = TurnLog.HEADER_SIZE + 8 + TurnLog.read(path).get(0).plan().length() + 4 + Long.BYTES;
+            channel.write(ByteBuffer.wrap(new byte[]{42}), second + 8);
+        }
+        assertEquals(1, TurnLog.read(path).size());
+        try (TurnLog log = TurnLog.open(path, 0)) {
+            assertEquals(1, log.entries());
+            log.append(2, 0, "done", 0, actions);
+        }
+        assertEquals(2, TurnLog.read(path).get(1).turn());
+    }
+
+    @Test
+    public void trimOnClose() throws IOException {
+        Path path = directory.resolve("trim.log");
+        try (TurnLog log = TurnLog.open(path, 0)) {
+            log.append(1, 0, "done", 0, new CommandBuffer());
+        }
+        // turn, player, plan length, plan, random state and action count
+        assertEquals(TurnLog.HEADER_SIZE + 8 + 3 + "done".length() + Long.BYTES + 1, Files.size(path));
+        try (TurnLog log = TurnLog.open(path, 0)) {
+            log.append(2, 1, "done", 0, new CommandBuffer());
+        }
+        assertEquals(2, TurnLog.read(path).size());
+    }
+
+    @Test
+    public void rejectCorruptEntry() throws IOException {
+        Path path = directory.resolve("corrupt.log");
+        // the plan is said to be longer than the entry, the checksum is still valid
+        byte[] payload = {1, 0, 0x7F, 'x'};
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer log = ByteBuffer.allocate(TurnLog.HEADER_SIZE + 8 + payload.length)
+                .putInt(TurnLog.MAGIC).putInt(TurnLog.VERSION)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        Files.write(path, log.array());
+        assertThrows(GameException.InvalidSave.class, () -> TurnLog.read(path));
+        assertThrows(GameException.InvalidSave.class, () -> TurnLog.open(path, 0));
+    }
+}
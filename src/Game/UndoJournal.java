@@ -0,0 +1,204 @@
+package Game;
+
+import Player.Player;
+import Region.Region;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * records the previous value of every mutation made on a game so that it can be undone.
+ * entries are kept in parallel arrays, recording and rolling back cost O(mutations).
+ */
+public class UndoJournal {
+    private static final byte DEPOSIT = 0;
+    private static final byte OWNER = 1;
+    private static final byte CITY_CENTER = 2;
+    private static final byte BUDGET = 3;
+    private static final byte IDENTIFIER = 4;
+    private static final byte IDENTIFIER_ABSENT = 5;
+    private static final byte CITY_CREW = 6;
+    private static final byte TURN = 7;
+    private static final byte HASH = 8;
+    private static final byte ELIMINATION = 9;
+    private static final byte RANDOM = 10;
+
+    private byte[] kinds;
+    private Object[] targets;
+    private Object[] previous;
+    private long[] values;
+    private int size;
+    private int openSavepoints;
+
+    public UndoJournal() {
+        this(64);
+    }
+
+    public UndoJournal(int capacity) {
+        kinds = new byte[capacity];
+        targets = new Object[capacity];
+        previous = new Object[capacity];
+        values = new long[capacity];
+    }
+
+    /**
+     * @return true when at least one savepoint is open and mutations should be recorded
+     */
+    public boolean isRecording() {
+        return openSavepoints > 0;
+    }
+
+    /**
+     * @return number of recorded entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * open a new savepoint, mutations are recorded until it is committed or rolled back
+     *
+     * @return mark to pass to {@link #commit(int)} or {@link #rollback(int, GameProps)}
+     */
+    public int savepoint() {
+        openSavepoints++;
+        return size;
+    }
+
+    /**
+     * keep every mutation made after the savepoint, entries are dropped once no savepoint is open
+     *
+     * @param savepoint mark returned by {@link #savepoint()}
+     */
+    public void commit(int savepoint) {
+        if (openSavepoints == 0 || savepoint > size)
+            throw new IllegalStateException("savepoint is not open");
+        openSavepoints--;
+        if (openSavepoints == 0)
+            clear(0);
+    }
+
+    /**
+     * undo every mutation made after the savepoint, newest first
+     *
+     * @param savepoint mark returned by {@link #savepoint()}
+     * @param game      game the mutations were made on
+     */
+    public void rollback(int savepoint, GameProps game) {
+        if (openSavepoints == 0 || savepoint > size)
+            throw new IllegalStateException("savepoint is not open");
+        openSavepoints--;
+        for (int i = size - 1; i >= savepoint; i--)
+            undo(i, game);
+        clear(savepoint);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void undo(int i, GameProps game) {
+        switch (kinds[i]) {
+            case DEPOSIT -> {
+                Region region = (Region) targets[i];
+                game.beforeUpdate(region);
+                region.updateDeposit(values[i] - region.getDeposit());
+                game.afterUpdate(region);
+            }
+            case OWNER -> {
+                Region region = (Region) targets[i];
+                game.beforeUpdate(region);
+                region.updateOwner((Player) previous[i]);
+                game.afterUpdate(region);
+            }
+            case CITY_CENTER -> {
+                Region region = (Region) targets[i];
+                game.beforeUpdate(region);
+                if (values[i] != 0)
+                    region.setCityCenter((Player) previous[i]);
+                else
+                    region.removeCityCenter();
+                region.updateOwner((Player) previous[i]);
+                game.afterUpdate(region);
+            }
+            case BUDGET -> {
+                Player player = (Player) targets[i];
+                player.updateBudget(values[i] - player.getBudget());
+            }
+            case IDENTIFIER -> ((Map<String, Long>) targets[i]).put((String) previous[i], values[i]);
+            case IDENTIFIER_ABSENT -> ((Map<String, Long>) targets[i]).remove((String) previous[i]);
+            case CITY_CREW -> game.cityCrew = (Region) targets[i];
+            case TURN -> {
+                game.currentPlayer = (Player) targets[i];
+                game.current = game.playerIndex(game.currentPlayer);
+                game.winner = (Player) previous[i];
+                game.turn = values[i];
+            }
+            case HASH -> game.stateHash = values[i];
+            case ELIMINATION -> game.restorePlayer((int) values[i]);
+            case RANDOM -> ((GameRandom) targets[i]).restore(values[i]);
+        }
+    }
+
+    private void clear(int from) {
+        Arrays.fill(targets, from, size, null);
+        Arrays.fill(previous, from, size, null);
+        size = from;
+    }
+
+    private void record(byte kind, Object target, Object old, long value) {
+        if (size == kinds.length) {
+            int capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        kinds[size] = kind;
+        targets[size] = target;
+        previous[size] = old;
+        values[size] = value;
+        size++;
+    }
+
+    public void recordDeposit(Region region) {
+        record(DEPOSIT, region, null, region.getDeposit());
+    }
+
+    public void recordOwner(Region region) {
+        record(OWNER, region, region.getOwner(), 0);
+    }
+
+    public void recordCityCenter(Region region) {
+        record(CITY_CENTER, region, region.getOwner(), region.getIsCityCenter() ? 1 : 0);
+    }
+
+    public void recordBudget(Player player) {
+        record(BUDGET, player, null, player.getBudget());
+    }
+
+    public void recordIdentifier(Map<String, Long> identifiers, String identifier) {
+        Long value = identifiers.get(identifier);
+        if (value == null)
+            record(IDENTIFIER_ABSENT, identifiers, identifier, 0);
+        else
+            record(IDENTIFIER, identifiers, identifier, value);
+    }
+
+    public void recordCityCrew(Region cityCrew) {
+        record(CITY_CREW, cityCrew, null, 0);
+    }
+
+    public void recordTurn(Player currentPlayer, Player winner, long turn) {
+        record(TURN, currentPlayer, winner, turn);
+    }
+
+    public void recordHash(long stateHash) {
+        record(HASH, null, null, stateHash);
+    }
+
+    public void recordElimination(int playerIndex) {
+        record(ELIMINATION, null, null, playerIndex);
+    }
+
+    public void recordRandom(GameRandom random) {
+        record(RANDOM, random, null, random.state());
+    }
+}
@@ -0,0 +1,52 @@
+package Game;
+
+import java.nio.ByteBuffer;
+
+/**
+ * variable length encoding of integers, 7 bits per byte with the high bit set while more bytes follow.
+ * signed values are zigzag encoded first so that small negative values stay small.
+ */
+public final class Varints {
+    /**
+     * largest number of bytes a long takes
+     */
+    public static final int MAX_SIZE = 10;
+
+    private Varints() {
+    }
+
+    public static void putLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static long getLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    public static void putSignedLong(ByteBuffer buffer, long value) {
+        putLong(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    public static long getSignedLong(ByteBuffer buffer) {
+        long value = getLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return number of bytes the value takes
+     */
+    public static int size(long value) {
+        return value == 0 ? 1 : (64 - Long.numberOfLeadingZeros(value) + 6) / 7;
+    }
+}
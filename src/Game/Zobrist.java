@@ -0,0 +1,70 @@
+package Game;
+
+/**
+ * keys for zobrist hashing of a game state.
+ * keys are derived from the feature with a fixed seed instead of random tables,
+ * so every replica computes the same hash and boards of any size need no table memory.
+ */
+public final class Zobrist {
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+    private static final long OWNER = 1;
+    private static final long CITY_CENTER = 2;
+    private static final long DEPOSIT = 3;
+    private static final long CITY_CREW = 4;
+    private static final long BUDGET = 5;
+    private static final long TURN = 6;
+
+    /**
+     * finalizer of <a href="https://prng.di.unimi.it/splitmix64.c">splitmix64</a>
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long key(long feature, long a, long b) {
+        return mix(mix(mix(SEED + feature) + a) + b);
+    }
+
+    /**
+     * @return bucket of a deposit, deposits within the same power of two share a bucket
+     */
+    public static int depositBucket(long deposit) {
+        return 64 - Long.numberOfLeadingZeros(deposit);
+    }
+
+    /**
+     * @param index      index of the cell
+     * @param ownerSlot  slot of the owner, `0` if no owner
+     * @param cityCenter whether the cell is a city center
+     * @param deposit    deposit of the cell
+     * @return hash of the cell, `0` for an empty cell
+     */
+    public static long cell(int index, int ownerSlot, boolean cityCenter, long deposit) {
+        long hash = 0;
+        if (ownerSlot != 0)
+            hash ^= key(OWNER, index, ownerSlot);
+        if (cityCenter)
+            hash ^= key(CITY_CENTER, index, 0);
+        int bucket = depositBucket(deposit);
+        if (bucket != 0)
+            hash ^= key(DEPOSIT, index, bucket);
+        return hash;
+    }
+
+    /**
+     * @param index index of the cell occupied by the city crew, `-1` if no city crew
+     */
+    public static long cityCrew(int index) {
+        return index < 0 ? 0 : key(CITY_CREW, index, 0);
+    }
+
+    public static long budget(int playerSlot, long budget) {
+        return key(BUDGET, playerSlot, budget);
+    }
+
+    public static long turn(long turn, int currentPlayerSlot) {
+        return key(TURN, turn, currentPlayerSlot);
+    }
+}
@@ -1,8 +1,24 @@
+import Engine.GameRegistry;
+import Engine.GameServer;
+import Engine.PlanPipeline;
 import org.junit.jupiter.api.Nested;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
 @Nested
 public class Main {
-    public static void main(String[] args) {
-        System.out.println("JUnit5 required");
+    /**
+     * serve games until the process is stopped
+     *
+     * @param args optional port to listen on, 7777 by default
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        GameRegistry registry = new GameRegistry();
+        PlanPipeline pipeline = new PlanPipeline(registry, 10000);
+        GameServer server = new GameServer(registry, pipeline, new InetSocketAddress(port),
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        System.out.println("serving games on port " + server.port());
     }
 }
@@ -0,0 +1,41 @@
+package Parser;
+
+import AST.Node.ExecNode;
+import Tokenizer.IterateTokenizer;
+
+import java.util.List;
+
+/**
+ * construction plan already tokenized and parsed, ready to be executed by a game
+ */
+public final class Plan {
+    private final String source;
+    private final List<ExecNode> nodes;
+
+    private Plan(String source, List<ExecNode> nodes) {
+        this.source = source;
+        this.nodes = nodes;
+    }
+
+    /**
+     * tokenize and parse a construction plan
+     *
+     * @param source construction plan
+     * @return parsed plan
+     */
+    public static Plan compile(String source) {
+        Parser parser = new GrammarParser(new IterateTokenizer(source));
+        return new Plan(source, List.copyOf(parser.parse()));
+    }
+
+    public String source() {
+        return source;
+    }
+
+    /**
+     * @return statements of the plan in execution order
+     */
+    public List<ExecNode> nodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,250 @@
+package Region;
+
+import Player.Player;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * regions of a territory stored off the heap in a direct or file mapped buffer, for maps too large to keep
+ * an object graph of regions on the heap. the buffer holds a header followed by the cells in row order:
+ * <pre>
+ * header  MAGIC rows cols CELL_SIZE        (4 bytes each)
+ * cell    deposit (8 bytes) ownerSlot (4 bytes) flags (4 bytes)
+ * </pre>
+ * the slot of an owner is its index in {@link #owners()} + 1 and 0 for no owner, bit 0 of the flags marks a
+ * city center. the buffer is the whole state of the board, so a snapshot of it is written to a file as is.
+ * the board holds no object per cell, a region is a view of its cell created when it is asked for.
+ */
+public final class OffHeapBoard {
+    public static final int MAGIC = 0x55504248;
+    public static final int HEADER_SIZE = 16;
+    public static final int CELL_SIZE = 16;
+    private static final int OWNER = 8;
+    private static final int FLAGS = 12;
+    private static final int CITY_CENTER = 1;
+
+    private final ByteBuffer cells;
+    private final int rows;
+    private final int cols;
+    private final long maxDeposit;
+    private final List<Player> owners;
+    private final Map<Player, Integer> slots;
+    private final List<Region> territory = new Territory();
+
+    private OffHeapBoard(ByteBuffer cells, long maxDeposit, List<Player> owners) {
+        this.cells = cells;
+        if (cells.getInt(0) != MAGIC || cells.getInt(12) != CELL_SIZE)
+            throw new IllegalArgumentException("not a board");
+        this.rows = cells.getInt(4);
+        this.cols = cells.getInt(8);
+        if (rows < 0 || cols < 0 || cells.capacity() != size(rows, cols))
+            throw new IllegalArgumentException("invalid board size");
+        this.maxDeposit = maxDeposit;
+        this.owners = new ArrayList<>(owners);
+        this.slots = new HashMap<>();
+        for (int i = 0; i < owners.size(); i++)
+            slots.put(owners.get(i), i + 1);
+    }
+
+    /**
+     * create an empty board in a direct buffer
+     */
+    public OffHeapBoard(long rows, long cols, long maxDeposit) {
+        this(header(ByteBuffer.allocateDirect(size(rows, cols)), rows, cols), maxDeposit, List.of());
+    }
+
+    /**
+     * create an empty board mapped to a file, the file then always holds the current board
+     *
+     * @param path file replaced by the board
+     */
+    public static OffHeapBoard map(Path path, long rows, long cols, long maxDeposit) throws IOException {
+        int size = size(rows, cols);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new OffHeapBoard(header(buffer, rows, cols), maxDeposit, List.of());
+        }
+    }
+
+    /**
+     * open a board written by {@link #export(Path)} or {@link #map(Path, long, long, long)}, changes to the
+     * board are not written back to the file
+     *
+     * @param owners owners of the board in slot order, see {@link #owners()}
+     * @throws IllegalArgumentException if the file does not hold a board
+     */
+    public static OffHeapBoard open(Path path, long maxDeposit, List<Player> owners) throws IOException {
+        // a private mapping copies the pages written to and needs a writable channel, the file is left as is
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("not a board");
+            return new OffHeapBoard(channel.map(FileChannel.MapMode.PRIVATE, 0, channel.size()), maxDeposit, owners);
+        }
+    }
+
+    private static int size(long rows, long cols) {
+        if (rows < 0 || cols < 0 || rows * cols > (Integer.MAX_VALUE - HEADER_SIZE) / CELL_SIZE)
+            throw new IllegalArgumentException("board too large");
+        return HEADER_SIZE + (int) (rows * cols) * CELL_SIZE;
+    }
+
+    private static ByteBuffer header(ByteBuffer buffer, long rows, long cols) {
+        return buffer.putInt(0, MAGIC).putInt(4, (int) rows).putInt(8, (int) cols).putInt(12, CELL_SIZE);
+    }
+
+    /**
+     * @return regions of the board in row order, every access creates a view of the cell that equals the other
+     * views of the same cell
+     */
+    public List<Region> territory() {
+        return territory;
+    }
+
+    /**
+     * @return players who owned a region of the board in the order they first did, which is the turn order
+     * for a board set up by placing the city centers in turn order
+     */
+    public List<Player> owners() {
+        return Collections.unmodifiableList(owners);
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public long cols() {
+        return cols;
+    }
+
+    /**
+     * write the board to a file straight from its buffer. the buffer is copied as it is being changed, so
+     * this must run on the thread playing the game between two turns or the file may mix two states
+     *
+     * @param path file replaced by the board
+     */
+    public void export(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = cells.duplicate().clear();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+
+    /**
+     * write the changes of a board created by {@link #map(Path, long, long, long)} to its file
+     */
+    public void force() {
+        if (cells instanceof MappedByteBuffer mapped)
+            mapped.force();
+    }
+
+    private int slotOf(Player player) {
+        if (player == null)
+            return 0;
+        Integer slot = slots.get(player);
+        if (slot == null) {
+            owners.add(player);
+            slot = owners.size();
+            slots.put(player, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * regions of the board in row order, created on demand
+     */
+    private final class Territory extends AbstractList<Region> implements RandomAccess {
+        @Override
+        public Region get(int index) {
+            return new Cell(Objects.checkIndex(index, size()));
+        }
+
+        @Override
+        public int size() {
+            return rows * cols;
+        }
+    }
+
+    /**
+     * a region of the board, holding nothing but its position
+     */
+    private final class Cell implements Region {
+        private final int index;
+        private final int offset;
+
+        private Cell(int index) {
+            this.index = index;
+            this.offset = HEADER_SIZE + index * CELL_SIZE;
+        }
+
+        private OffHeapBoard board() {
+            return OffHeapBoard.this;
+        }
+
+        @Override
+        public boolean getIsCityCenter() {
+            return (cells.getInt(offset + FLAGS) & CITY_CENTER) != 0;
+        }
+
+        @Override
+        public Player getOwner() {
+            int slot = cells.getInt(offset + OWNER);
+            return slot == 0 ? null : owners.get(slot - 1);
+        }
+
+        @Override
+        public void removeCityCenter() {
+            cells.putInt(offset + FLAGS, cells.getInt(offset + FLAGS) & ~CITY_CENTER);
+        }
+
+        @Override
+        public Point getLocation() {
+            return Point.of(index % cols, index / cols);
+        }
+
+        @Override
+        public long getDeposit() {
+            return cells.getLong(offset);
+        }
+
+        @Override
+        public void updateDeposit(long amount) {
+            long deposit = Math.max(0, amount + cells.getLong(offset));
+            cells.putLong(offset, Math.min(maxDeposit, deposit));
+        }
+
+        @Override
+        public void updateOwner(Player owner) {
+            cells.putInt(offset + OWNER, slotOf(owner));
+        }
+
+        @Override
+        public void setCityCenter(Player owner) {
+            cells.putInt(offset + FLAGS, cells.getInt(offset + FLAGS) | CITY_CENTER);
+            cells.putInt(offset + OWNER, slotOf(owner));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Cell cell && cell.board() == board() && cell.index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("owner: %s, location: %s", getOwner(), getLocation());
+        }
+    }
+}
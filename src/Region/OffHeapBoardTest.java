@@ -0,0 +1,90 @@
+package Region;
+
+import Game.Game;
+import Game.GameUtils;
+import Player.Player;
+import Player.PlayerProps;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapBoardTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void sameGameAsHeapRegions() {
+        String configuration = "m=20 n=30 interest_pct=5";
+        Game heap = GameUtils.createCustomGame(configuration, List.of("a", "b", "c"), 17);
+        Game offHeap = GameUtils.createOffHeapGame(configuration, List.of("a", "b", "c"), 17);
+        String[] plans = {
+                "d = random % 6 if (d) then move up else move down invest random % 20 + 1",
+                "n = random % 30 if (random % 2) then move upleft else move downright invest n",
+                "collect 1 shoot up 10 relocate",
+        };
+        assertEquals(heap.stateHash(), offHeap.stateHash());
+        for (int i = 0; i < 300 && heap.winner() == null; i++) {
+            String plan = plans[i % 3];
+            heap.submitPlan(plan);
+            offHeap.submitPlan(plan);
+            assertEquals(heap.stateHash(), offHeap.stateHash());
+        }
+    }
+
+    @Test
+    void exportSnapshot() throws IOException {
+        Player a = new PlayerProps(1, "a", 100);
+        Player b = new PlayerProps(2, "b", 100);
+        OffHeapBoard board = new OffHeapBoard(3, 4, 1000);
+        List<Region> territory = board.territory();
+        territory.get(5).setCityCenter(a);
+        territory.get(5).updateDeposit(50);
+        territory.get(6).updateOwner(b);
+        territory.get(6).updateDeposit(5000);
+        assertEquals(List.of(a, b), board.owners());
+        assertEquals(Point.of(1, 1), territory.get(5).getLocation());
+        // regions are views created on demand, equal for the same cell of the same board
+        assertEquals(territory.get(5), board.territory().get(5));
+        assertNotEquals(territory.get(5), territory.get(6));
+        assertNotEquals(territory.get(5), new OffHeapBoard(3, 4, 1000).territory().get(5));
+
+        Path file = directory.resolve("board.bin");
+        board.export(file);
+        assertEquals(OffHeapBoard.HEADER_SIZE + 12 * OffHeapBoard.CELL_SIZE, Files.size(file));
+        territory.get(5).removeCityCenter();
+
+        OffHeapBoard copy = OffHeapBoard.open(file, 1000, board.owners());
+        assertEquals(3, copy.rows());
+        assertEquals(4, copy.cols());
+        Region center = copy.territory().get(5);
+        assertTrue(center.getIsCityCenter());
+        assertSame(a, center.getOwner());
+        assertEquals(50, center.getDeposit());
+        assertSame(b, copy.territory().get(6).getOwner());
+        assertEquals(1000, copy.territory().get(6).getDeposit());
+        assertNull(copy.territory().get(0).getOwner());
+
+        Path empty = Files.createFile(directory.resolve("empty"));
+        assertThrows(IllegalArgumentException.class, () -> OffHeapBoard.open(empty, 1000, List.of()));
+    }
+
+    @Test
+    void mappedBoard() throws IOException {
+        Player a = new PlayerProps(1, "a", 100);
+        Path file = directory.resolve("mapped.bin");
+        OffHeapBoard board = OffHeapBoard.map(file, 2, 2, 100);
+        board.territory().get(3).setCityCenter(a);
+        board.territory().get(3).updateDeposit(7);
+        board.force();
+
+        Region region = OffHeapBoard.open(file, 100, List.of(a)).territory().get(3);
+        assertSame(a, region.getOwner());
+        assertEquals(7, region.getDeposit());
+    }
+}